@@ -0,0 +1,43 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Shop;
+
+import java.time.LocalDateTime;
+
+/**
+ * 基准测试使用的固定数据
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static Shop shop(long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("shop-" + id);
+        shop.setTypeId(1L);
+        shop.setImages("https://qcloud.dpfile.com/pc/shop-" + id + ".jpg");
+        shop.setArea("benchmark");
+        shop.setAddress("address-" + id);
+        shop.setX(120.0);
+        shop.setY(30.0);
+        shop.setAvgPrice(80L);
+        shop.setSold(4215);
+        shop.setComments(3035);
+        shop.setScore(45);
+        shop.setOpenHours("10:00-22:00");
+        shop.setCreateTime(LocalDateTime.of(2025, 1, 1, 10, 0));
+        shop.setUpdateTime(LocalDateTime.of(2025, 6, 1, 10, 0));
+        return shop;
+    }
+
+    public static UserDTO user(long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName("user_" + id);
+        user.setIcon("/imgs/icons/" + id + ".jpg");
+        return user;
+    }
+}
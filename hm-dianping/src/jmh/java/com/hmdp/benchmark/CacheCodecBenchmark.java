@@ -0,0 +1,68 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.BinaryCacheCodec;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.CacheEntry;
+import com.hmdp.utils.JsonCacheCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheClient 写入和读取缓存时的编解码开销，json 为 Hutool JSON，binary 为 Smile 加固定头
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class CacheCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    public String codec;
+
+    private CacheCodec cacheCodec;
+    private Shop shop;
+    private long expireAt;
+    private byte[] plain;
+    private byte[] logical;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheCodec = "BINARY".equals(codec) ? new BinaryCacheCodec() : new JsonCacheCodec();
+        shop = BenchmarkData.shop(1L);
+        expireAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(20);
+        plain = cacheCodec.encode(shop);
+        logical = cacheCodec.encode(shop, expireAt, 15);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return cacheCodec.encode(shop);
+    }
+
+    @Benchmark
+    public byte[] encodeWithExpire() {
+        return cacheCodec.encode(shop, expireAt, 15);
+    }
+
+    @Benchmark
+    public Shop decode() {
+        return cacheCodec.decode(plain, Shop.class);
+    }
+
+    @Benchmark
+    public CacheEntry<Shop> decodeWithExpire() {
+        return cacheCodec.decodeWithExpire(logical, Shop.class);
+    }
+
+    /**
+     * 逻辑过期检查只读取过期时间
+     */
+    @Benchmark
+    public long expireAt() {
+        return cacheCodec.expireAt(logical);
+    }
+}
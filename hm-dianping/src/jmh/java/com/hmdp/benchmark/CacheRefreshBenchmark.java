@@ -0,0 +1,126 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheBloomFilter;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.CacheRebuildExecutor;
+import com.hmdp.utils.HotKeyDetector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 逻辑过期 与 XFetch 提前刷新 在热点倾斜访问下的对比
+ * 访问的店铺id服从Zipf分布，逻辑过期时间很短，测量期间会不断有key过期；
+ * 结束时输出每千次查询的数据库加载次数和重建锁竞争次数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(16)
+public class CacheRefreshBenchmark {
+    private static final int KEYS = 1000;
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final long LOGICAL_TTL_MILLIS = 500;
+    /**
+     * 模拟数据库查询耗时
+     */
+    private static final long DB_LATENCY_MILLIS = 2;
+
+    @Param({"LOGICAL_EXPIRE", "XFETCH"})
+    public String mode;
+
+    private RedisStandIn redis;
+    private SimpleMeterRegistry registry;
+    private CacheRebuildExecutor rebuildExecutor;
+    private CacheClient cacheClient;
+    private String prefix;
+    private double[] cdf;
+    private final AtomicLong dbLoads = new AtomicLong();
+    private final LongAdder queries = new LongAdder();
+    private final Function<Long, Shop> dbFunction = this::loadShop;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redis = new RedisStandIn();
+        registry = new SimpleMeterRegistry();
+        CacheProperties properties = new CacheProperties();
+        properties.getHotKey().setEnabled(false);
+        properties.getBloom().setEnabled(false);
+        CacheMetrics metrics = new CacheMetrics(registry);
+        rebuildExecutor = new CacheRebuildExecutor(properties, metrics);
+        cacheClient = new CacheClient(redis.stringRedisTemplate(), redis.cacheRedisTemplate(),
+                new RedisMessageListenerContainer(), new CacheBloomFilter(), new HotKeyDetector(properties),
+                metrics, rebuildExecutor, properties);
+        prefix = "bench:" + mode.toLowerCase() + ":";
+        cdf = zipfCdf(KEYS, ZIPF_EXPONENT);
+        Map<Long, Shop> shops = new HashMap<>(KEYS * 2);
+        for (long id = 1; id <= KEYS; id++) {
+            shops.put(id, BenchmarkData.shop(id));
+        }
+        cacheClient.setBatchWithLogicalExpire(prefix, shops, LOGICAL_TTL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        long total = Math.max(1, queries.sum());
+        double contended = registry.find("hmdp.cache.lock").tag("result", "contended")
+                .counters().stream().mapToDouble(Counter::count).sum();
+        System.out.printf("%n[%s] queries=%d dbLoads=%d dbLoadsPer1k=%.3f lockContendedPer1k=%.3f%n",
+                mode, total, dbLoads.get(), dbLoads.get() * 1000.0 / total, contended * 1000.0 / total);
+        rebuildExecutor.shutdown();
+        redis.stop();
+    }
+
+    @Benchmark
+    public Shop query() {
+        queries.increment();
+        Long id = nextId();
+        if ("XFETCH".equals(mode)) {
+            return cacheClient.queryWithEarlyRefresh(prefix, id, Shop.class, dbFunction, LOGICAL_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return cacheClient.queryWithLogicalExpire(prefix, id, Shop.class, dbFunction, LOGICAL_TTL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private Shop loadShop(Long id) {
+        dbLoads.incrementAndGet();
+        try {
+            Thread.sleep(DB_LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return BenchmarkData.shop(id);
+    }
+
+    private long nextId() {
+        int idx = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+        return (idx < 0 ? -idx - 1 : idx) + 1;
+    }
+
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, s);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+}
@@ -0,0 +1,57 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.IdProperties;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisIdWorker 三种序列号分配方式的吞吐量：incr 每个id一次redis往返，
+ * segment 每个号段一次 INCRBY，snowflake 不访问redis；分别测量单线程和64线程
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+public class IdWorkerBenchmark {
+    private static final String PREFIX = "order";
+
+    @Param({"INCR", "SEGMENT", "SNOWFLAKE"})
+    public String mode;
+
+    private RedisStandIn redis;
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    private RedisIdWorker redisIdWorker;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redis = new RedisStandIn();
+        IdProperties properties = new IdProperties();
+        properties.getModes().put(PREFIX, IdProperties.IdMode.valueOf(mode));
+        snowflakeIdGenerator = new SnowflakeIdGenerator(redis.stringRedisTemplate(), properties);
+        snowflakeIdGenerator.init();
+        redisIdWorker = new RedisIdWorker(redis.stringRedisTemplate(), properties, snowflakeIdGenerator);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        redisIdWorker.shutdown();
+        snowflakeIdGenerator.release();
+        redis.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long uncontended() {
+        return redisIdWorker.nextId(PREFIX);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long contended() {
+        return redisIdWorker.nextId(PREFIX);
+    }
+}
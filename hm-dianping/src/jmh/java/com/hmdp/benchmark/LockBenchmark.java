@@ -0,0 +1,101 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.ILock;
+import com.hmdp.utils.SimpleRedisLock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.redisson.Redisson;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SimpleRedisLock 与 Redisson RLock 一次加锁+解锁的开销
+ * uncontended 每个线程使用自己的锁，contended 所有线程抢同一把锁，抢不到直接返回
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+public class LockBenchmark {
+    private static final long LEASE_SECONDS = 10;
+
+    @Param({"SIMPLE", "REDISSON"})
+    public String impl;
+
+    private RedisStandIn redis;
+    private RedissonClient redissonClient;
+    private final AtomicLong threadSeq = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class ThreadLock {
+        Locker own;
+        Locker shared;
+
+        @Setup(Level.Trial)
+        public void setUp(LockBenchmark benchmark) {
+            own = benchmark.locker("bench:own:" + benchmark.threadSeq.incrementAndGet());
+            shared = benchmark.locker("bench:shared");
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redis = new RedisStandIn();
+        if ("REDISSON".equals(impl)) {
+            Config config = new Config();
+            config.useSingleServer().setAddress("redis://127.0.0.1:" + redis.port());
+            redissonClient = Redisson.create(config);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (redissonClient != null) {
+            redissonClient.shutdown();
+        }
+        redis.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean uncontended(ThreadLock lock) throws InterruptedException {
+        return lock.own.lockAndUnlock();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void contended(ThreadLock lock, Blackhole bh) throws InterruptedException {
+        bh.consume(lock.shared.lockAndUnlock());
+    }
+
+    private Locker locker(String name) {
+        if ("REDISSON".equals(impl)) {
+            RLock rLock = redissonClient.getLock("lock:" + name);
+            return () -> {
+                boolean locked = rLock.tryLock(0, LEASE_SECONDS, TimeUnit.SECONDS);
+                if (locked) {
+                    rLock.unlock();
+                }
+                return locked;
+            };
+        }
+        ILock simpleLock = new SimpleRedisLock(name, redis.stringRedisTemplate());
+        return () -> {
+            boolean locked = simpleLock.tryLock(LEASE_SECONDS);
+            if (locked) {
+                simpleLock.unlock();
+            }
+            return locked;
+        };
+    }
+
+    @FunctionalInterface
+    interface Locker {
+        boolean lockAndUnlock() throws InterruptedException;
+    }
+}
@@ -0,0 +1,77 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.utils.SeckillStockManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * seckill.lua 使用集合(SISMEMBER/SADD)与位图(GETBIT/SETBIT)记录下单用户的延迟和内存占用
+ * dense 为连续自增的用户id，sparse 为 [1, 2^32) 内随机的用户id；结束时输出每个用户占用的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+public class OrderDedupBenchmark {
+    private static final long VOUCHER_ID = 1L;
+    private static final int STOCK = 100_000_000;
+
+    @Param({"SET", "BITMAP"})
+    public String dedup;
+
+    @Param({"DENSE", "SPARSE"})
+    public String ids;
+
+    private RedisStandIn redis;
+    private StringRedisTemplate stringRedisTemplate;
+    private SeckillStockManager stockManager;
+    private DefaultRedisScript<Long> memoryUsage;
+    private final AtomicLong userId = new AtomicLong();
+    private final AtomicLong orderId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redis = new RedisStandIn();
+        stringRedisTemplate = redis.stringRedisTemplate();
+        memoryUsage = new DefaultRedisScript<>("return redis.call('memory', 'usage', KEYS[1], 'samples', '0')", Long.class);
+        stockManager = new SeckillStockManager(stringRedisTemplate, new SeckillProperties());
+        stockManager.init(VOUCHER_ID, STOCK, null, dedup);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearStream() {
+        stringRedisTemplate.delete("stream.orders");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        List<String> keys = stockManager.orderKeys(VOUCHER_ID);
+        long bytes = 0;
+        for (String key : keys) {
+            Long usage = stringRedisTemplate.execute(memoryUsage, Collections.singletonList(key));
+            bytes += usage == null ? 0 : usage;
+        }
+        long users = stockManager.sold(VOUCHER_ID);
+        System.out.printf("%n[%s/%s] users=%d keys=%d bytes=%d bytesPerUser=%.2f%n",
+                dedup, ids, users, keys.size(), bytes, bytes / (double) Math.max(1, users));
+        redis.stop();
+    }
+
+    @Benchmark
+    public Long seckill() {
+        long uid = "DENSE".equals(ids)
+                ? userId.incrementAndGet()
+                : ThreadLocalRandom.current().nextLong(1, 1L << 32);
+        return stockManager.seckill(VOUCHER_ID, uid, orderId.incrementAndGet(), 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.RedisConfig;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * 基准测试使用的本地Redis进程，启动在随机端口，避免依赖外部环境
+ */
+public class RedisStandIn {
+    private final RedisServer server;
+    private final int port;
+    private final LettuceConnectionFactory connectionFactory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    public RedisStandIn() throws IOException {
+        this.port = freePort();
+        this.server = RedisServer.newRedisServer()
+                .port(port)
+                .setting("save \"\"")
+                .setting("appendonly no")
+                .build();
+        server.start();
+        this.connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+        this.stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        this.cacheRedisTemplate = new RedisConfig().cacheRedisTemplate(connectionFactory);
+        cacheRedisTemplate.afterPropertiesSet();
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public LettuceConnectionFactory connectionFactory() {
+        return connectionFactory;
+    }
+
+    public StringRedisTemplate stringRedisTemplate() {
+        return stringRedisTemplate;
+    }
+
+    public RedisTemplate<String, byte[]> cacheRedisTemplate() {
+        return cacheRedisTemplate;
+    }
+
+    public void stop() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.hmdp.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口返回的 Result 序列化为JSON的开销，ObjectMapper 配置与 spring.jackson 一致(忽略空字段)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class ResultSerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private Result single;
+    private Result page;
+    private Result failure;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        single = Result.ok(BenchmarkData.shop(1L));
+        List<Shop> shops = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            shops.add(BenchmarkData.shop(id));
+        }
+        page = Result.ok(shops, 100L);
+        failure = Result.fail("店铺不存在");
+    }
+
+    @Benchmark
+    public byte[] single() throws Exception {
+        return objectMapper.writeValueAsBytes(single);
+    }
+
+    /**
+     * 一页店铺列表，与分页查询接口返回的数据量相同
+     */
+    @Benchmark
+    public byte[] page() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] failure() throws Exception {
+        return objectMapper.writeValueAsBytes(failure);
+    }
+}
@@ -0,0 +1,58 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.utils.SeckillStockManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 秒杀在 1/4/16 个库存分片下的吞吐量
+ * 用户id随机分布，库存足够大，测量的是正常抢购路径；每轮结束后清空订单流避免内存持续增长
+ * 单机Redis下各分片仍由同一个线程执行，分片的收益在集群中把分片分散到不同节点时才体现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(16)
+public class SeckillShardBenchmark {
+    private static final long VOUCHER_ID = 1L;
+    private static final int STOCK = 100_000_000;
+
+    @Param({"1", "4", "16"})
+    public int shards;
+
+    private RedisStandIn redis;
+    private StringRedisTemplate stringRedisTemplate;
+    private SeckillStockManager stockManager;
+    private final AtomicLong orderId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redis = new RedisStandIn();
+        stringRedisTemplate = redis.stringRedisTemplate();
+        stockManager = new SeckillStockManager(stringRedisTemplate, new SeckillProperties());
+        stockManager.init(VOUCHER_ID, STOCK, shards, null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearStream() {
+        stringRedisTemplate.delete("stream.orders");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        redis.stop();
+    }
+
+    @Benchmark
+    public Long seckill() {
+        long userId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE >>> 11);
+        return stockManager.seckill(VOUCHER_ID, userId, orderId.incrementAndGet(), 0);
+    }
+}
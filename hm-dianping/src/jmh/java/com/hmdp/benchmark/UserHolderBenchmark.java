@@ -0,0 +1,49 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.UserHolder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserHolder 的 ThreadLocal 访问开销：每个请求在拦截器中保存和清除一次，业务代码中读取多次
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class UserHolderBenchmark {
+    private UserDTO user;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        user = BenchmarkData.user(1L);
+        UserHolder.saveUser(user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Benchmark
+    public Long getUser() {
+        return UserHolder.getUser().getId();
+    }
+
+    /**
+     * 一次请求的完整生命周期：保存、读取、清除
+     */
+    @Benchmark
+    public Long request() {
+        UserHolder.saveUser(user);
+        try {
+            return UserHolder.getUser().getId();
+        } finally {
+            UserHolder.removeUser();
+        }
+    }
+}
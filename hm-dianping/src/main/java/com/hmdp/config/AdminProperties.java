@@ -0,0 +1,27 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 运维接口访问控制 hmdp.admin.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.admin")
+public class AdminProperties {
+
+    /**
+     * 可以访问 /admin/** 运维接口的用户id，为空时所有用户都不能访问
+     */
+    private Set<Long> userIds = new HashSet<>();
+
+    /**
+     * 访问 actuator 指标等端点的 Bearer token，为空时只开放健康检查
+     */
+    private String actuatorToken;
+}
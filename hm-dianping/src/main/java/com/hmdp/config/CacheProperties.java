@@ -0,0 +1,216 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存相关配置 hmdp.cache.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.cache")
+public class CacheProperties {
+
+    /**
+     * 进程内一级缓存
+     */
+    private Local local = new Local();
+
+    /**
+     * 布隆过滤器
+     */
+    private Bloom bloom = new Bloom();
+
+    /**
+     * 热点key探测与本地副本
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 缓存预热
+     */
+    private Preheat preheat = new Preheat();
+
+    /**
+     * 逻辑过期数据在Redis中比逻辑过期时间多保留的时长，这段时间内返回旧数据并异步重建
+     */
+    private Duration logicalGrace = Duration.ofMinutes(30);
+
+    /**
+     * 缓存异步重建线程池
+     */
+    private Rebuild rebuild = new Rebuild();
+
+    /**
+     * 逻辑过期数据的刷新方式
+     */
+    private Refresh refresh = new Refresh();
+
+    /**
+     * 缓存未命中时，等待同一节点内其他线程加载结果的最长时间，超时后自行查询Redis或数据库
+     */
+    private Duration loadTimeout = Duration.ofSeconds(3);
+
+    /**
+     * 缓存未命中时，等待其他节点持有的重建锁的最长时间，超时后直接查询数据库
+     */
+    private Duration mutexWait = Duration.ofMillis(500);
+
+    /**
+     * 写缓存使用的编码，读取时自动识别两种格式
+     */
+    private Codec codec = Codec.JSON;
+
+    public enum Codec {
+        /**
+         * Hutool JSON，与旧版本节点兼容
+         */
+        JSON,
+        /**
+         * 固定头部 + Smile 二进制
+         */
+        BINARY
+    }
+
+    public enum RefreshMode {
+        /**
+         * 过期后由抢到锁的请求异步重建，重建完成前返回旧数据
+         */
+        LOGICAL_EXPIRE,
+        /**
+         * XFetch：过期前按概率提前刷新，越接近过期、重建越慢概率越大，不需要锁
+         */
+        XFETCH
+    }
+
+    @Data
+    public static class Rebuild {
+        private int threads = 10;
+        /**
+         * 排队上限，队列满时不再提交重建，继续返回旧数据
+         */
+        private int queueCapacity = 1000;
+        /**
+         * 关闭时等待排队任务完成的最长时间
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Refresh {
+        /**
+         * 按key前缀选择刷新方式，未配置的前缀使用 logical_expire
+         */
+        private Map<String, RefreshMode> modes = new HashMap<>();
+        /**
+         * XFetch 系数，大于1更早刷新，小于1更晚刷新
+         */
+        private double beta = 1.0;
+    }
+
+    @Data
+    public static class Local {
+        /**
+         * 是否开启一级缓存，默认关闭
+         */
+        private boolean enabled = false;
+        /**
+         * 最大条目数
+         */
+        private long maximumSize = 10000;
+        /**
+         * 写入后过期时间，决定了节点间最长的不一致窗口
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Preheat {
+        private boolean enabled = true;
+        /**
+         * 启动预热时每批写入Redis的数量
+         */
+        private int batchSize = 500;
+        /**
+         * 定时预热热点店铺的间隔
+         */
+        private Duration interval = Duration.ofMinutes(5);
+        /**
+         * 固定需要预热的店铺id，与探测到的热点店铺合并
+         */
+        private List<Long> hotShopIds = new ArrayList<>();
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * 默认关闭，开启后热点key在本地保留副本，写入热点key时广播失效
+         */
+        private boolean enabled = false;
+        /**
+         * 采样率，只有被采样的访问才会计入 Count-Min Sketch
+         */
+        private double sampleRate = 0.125;
+        /**
+         * 滑动窗口长度及槽位数
+         */
+        private Duration window = Duration.ofSeconds(10);
+        private int windowSlots = 5;
+        /**
+         * 窗口内估算访问量达到该值时晋升为热点，低于一半时降级
+         */
+        private long threshold = 2000;
+        /**
+         * 热点key数量上限
+         */
+        private int maxHotKeys = 500;
+        /**
+         * Count-Min Sketch 的行数和每行宽度
+         */
+        private int depth = 4;
+        private int width = 4096;
+        /**
+         * 热点key本地副本的过期时间
+         */
+        private Duration replicaTtl = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 是否在启动时加载布隆过滤器
+         */
+        private boolean enabled = true;
+        /**
+         * 期望误判率，决定位数组大小
+         */
+        private double fpp = 0.01;
+        /**
+         * 预期容量 = 表中现有数量 * 增长系数
+         */
+        private double growthFactor = 2.0;
+        /**
+         * 预期容量下限
+         */
+        private long minExpectedInsertions = 10000;
+        /**
+         * 检查是否需要重建的间隔
+         */
+        private Duration checkInterval = Duration.ofMinutes(1);
+        /**
+         * 定期全量重建的间隔，清理已删除的id并按最新数量重新分配容量
+         */
+        private Duration rebuildInterval = Duration.ofHours(6);
+        /**
+         * 填充率超过该值时提前重建，达到预期容量时约为0.5
+         */
+        private double maxFillRatio = 0.6;
+    }
+}
@@ -0,0 +1,76 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 全局id生成配置 hmdp.id.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.id")
+public class IdProperties {
+
+    /**
+     * 按业务前缀选择序列号分配方式，未配置的前缀使用 incr
+     */
+    private Map<String, IdMode> modes = new HashMap<>();
+
+    /**
+     * 号段模式
+     */
+    private Segment segment = new Segment();
+
+    /**
+     * 本地 snowflake 模式
+     */
+    private Snowflake snowflake = new Snowflake();
+
+    public enum IdMode {
+        /**
+         * 每个id执行一次 INCR
+         */
+        INCR,
+        /**
+         * 一次 INCRBY 预留一段序列号，在本地分配
+         */
+        SEGMENT,
+        /**
+         * 本地生成，worker id 从redis租用
+         */
+        SNOWFLAKE
+    }
+
+    @Data
+    public static class Segment {
+        /**
+         * 每次预留的序列号数量
+         */
+        private int step = 1000;
+        /**
+         * 当前号段剩余比例低于该值时在后台预取下一段
+         */
+        private double lowWater = 0.2;
+    }
+
+    @Data
+    public static class Snowflake {
+        /**
+         * worker id 租约时长
+         */
+        private Duration leaseTtl = Duration.ofSeconds(30);
+        /**
+         * 续约间隔，需小于租约时长
+         */
+        private Duration heartbeat = Duration.ofSeconds(10);
+        /**
+         * 允许的最大时钟回拨，范围内沿用上次的秒数，超过则拒绝生成id
+         */
+        private Duration maxRollback = Duration.ofSeconds(5);
+    }
+}
@@ -1,7 +1,11 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.ActuatorAccessFilter;
+import com.hmdp.utils.AdminInterceptor;
 import com.hmdp.utils.LoginInterceptor;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -13,6 +17,8 @@ import javax.annotation.Resource;
 public class MvcConfig implements WebMvcConfigurer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private AdminProperties adminProperties;
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(new LoginInterceptor())
@@ -22,7 +28,21 @@ public class MvcConfig implements WebMvcConfigurer {
                                 "/shop/type/**"
                                 ,"/upload/**"
                                 ,"/blog/hot").order(1);
+        // 运维接口在登录校验之后再校验管理员
+        registry.addInterceptor(new AdminInterceptor(adminProperties))
+                .addPathPatterns("/admin/**").order(2);
         registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate))
                 .addPathPatterns("/**").order(0);
     }
+
+    /**
+     * actuator 端点不经过上面的拦截器，单独用过滤器控制访问
+     */
+    @Bean
+    public FilterRegistrationBean<ActuatorAccessFilter> actuatorAccessFilter() {
+        FilterRegistrationBean<ActuatorAccessFilter> registration =
+                new FilterRegistrationBean<>(new ActuatorAccessFilter(adminProperties));
+        registration.addUrlPatterns("/actuator", "/actuator/*");
+        return registration;
+    }
 }
@@ -0,0 +1,190 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 秒杀相关配置 hmdp.seckill.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.seckill")
+public class SeckillProperties {
+
+    /**
+     * 新建秒杀券默认的库存分片数，1表示不分片
+     */
+    private int stockShards = 1;
+
+    /**
+     * 新建秒杀券默认的下单用户去重方式
+     */
+    private OrderDedup orderDedup = OrderDedup.SET;
+
+    /**
+     * 本地售罄标记的有效期，过期后重新执行脚本确认
+     */
+    private Duration soldOutRecheck = Duration.ofSeconds(10);
+
+    /**
+     * 全量重新加载秒杀时间窗口的间隔
+     */
+    private Duration scheduleReload = Duration.ofSeconds(60);
+
+    /**
+     * 限流
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    /**
+     * 订单消息消费
+     */
+    private Consumer consumer = new Consumer();
+
+    /**
+     * 订单消息流监控与清理
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * 数据库库存回写与对账
+     */
+    private StockSync stockSync = new StockSync();
+
+    /**
+     * 订单异步处理状态
+     */
+    private Status status = new Status();
+
+    public enum OrderDedup {
+        /**
+         * 集合保存下单用户id，适合用户id稀疏的场景
+         */
+        SET,
+        /**
+         * 按 userId / 65536 分块的位图，用户id连续时每个用户只占1位
+         */
+        BITMAP
+    }
+
+    @Data
+    public static class RateLimit {
+        private boolean enabled = true;
+        /**
+         * 单个用户每秒允许的请求数及突发数，在本地限流
+         */
+        private double userRate = 2;
+        private double userBurst = 5;
+        /**
+         * 本地保存令牌桶的用户数上限
+         */
+        private long maxUsers = 100000;
+        /**
+         * 未单独配置的秒杀券每秒允许的请求数及突发数，在redis中全局限流，0表示不限
+         */
+        private double voucherRate = 0;
+        private double voucherBurst = 0;
+        /**
+         * 本地缓存的秒杀券限流配置刷新间隔
+         */
+        private Duration configRefresh = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Status {
+        /**
+         * seckill:status:{orderId} 的过期时间
+         */
+        private Duration ttl = Duration.ofMinutes(30);
+        /**
+         * 是否在本地缓存终态(persisted/failed)
+         */
+        private boolean localCache = true;
+        private long localCacheSize = 100000;
+        private Duration localCacheTtl = Duration.ofMinutes(1);
+        /**
+         * 长轮询最长等待时间
+         */
+        private Duration maxWait = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class StockSync {
+        /**
+         * 累计的库存扣减量写入数据库的间隔
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+        /**
+         * 节点超过该时长未回写(心跳)视为已下线，其未回写的扣减量不再计入对账
+         */
+        private Duration writerTimeout = Duration.ofSeconds(15);
+        /**
+         * Redis与数据库库存对账间隔
+         */
+        private Duration reconcileInterval = Duration.ofMinutes(5);
+        /**
+         * 对账范围: 进行中以及结束时间在该时长内的秒杀券
+         */
+        private Duration reconcileWindow = Duration.ofDays(1);
+        /**
+         * 连续两次对账偏差相同时是否修复数据库库存，为false时只告警
+         */
+        private boolean repair = true;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * 采集待确认数、积压时间等指标的间隔
+         */
+        private Duration monitorInterval = Duration.ofSeconds(10);
+        /**
+         * 按水位线清理已确认消息的间隔
+         */
+        private Duration trimInterval = Duration.ofSeconds(60);
+        /**
+         * 已确认消息至少保留的时间，便于排查问题
+         */
+        private Duration retention = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Consumer {
+        /**
+         * 每次最多读取的消息数，同一批订单在一个事务中写入
+         */
+        private int batchSize = 100;
+        /**
+         * 没有消息时阻塞等待的最长时间
+         */
+        private Duration maxWait = Duration.ofSeconds(2);
+        /**
+         * 消费者名称，为空时使用 主机名-进程号，每个实例必须不同
+         */
+        private String name;
+        /**
+         * 处理订单的线程数，消息按userId分配到固定线程
+         */
+        private int threads = 4;
+        /**
+         * 其他消费者的消息空闲超过该时间后被认领
+         */
+        private Duration claimIdle = Duration.ofSeconds(60);
+        /**
+         * 检查空闲消息的间隔
+         */
+        private Duration claimInterval = Duration.ofSeconds(30);
+        /**
+         * 消息最多投递次数(按XPENDING的投递计数)，超过后移入死信队列 stream.orders.dlq
+         */
+        private int maxDeliveries = 5;
+        /**
+         * 处理pending-list失败后的重试间隔，连续失败时翻倍
+         */
+        private Duration retryBackoff = Duration.ofMillis(100);
+        private Duration maxRetryBackoff = Duration.ofSeconds(5);
+    }
+}
@@ -0,0 +1,77 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.SeckillDeadLetterQueue;
+import com.hmdp.utils.SeckillStockReconciler;
+import com.hmdp.utils.SeckillStreamMonitor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 秒杀运维接口
+ */
+@RestController
+@RequestMapping("/admin/seckill")
+public class SeckillAdminController {
+
+    @Resource
+    private SeckillStreamMonitor seckillStreamMonitor;
+
+    @Resource
+    private SeckillStockReconciler seckillStockReconciler;
+
+    @Resource
+    private SeckillDeadLetterQueue seckillDeadLetterQueue;
+
+    /**
+     * 查询订单消息流长度、各消费者组的待确认数和积压时间
+     */
+    @GetMapping("/stream")
+    public Result stream() {
+        seckillStreamMonitor.collect();
+        return Result.ok(seckillStreamMonitor.snapshot());
+    }
+
+    /**
+     * 查询最近一次库存对账结果
+     */
+    @GetMapping("/stock/reconcile")
+    public Result lastReconcile() {
+        return Result.ok(seckillStockReconciler.lastReport());
+    }
+
+    /**
+     * 立即执行一次库存对账，其他节点正在对账时返回上一次的结果
+     */
+    @PostMapping("/stock/reconcile")
+    public Result reconcile() {
+        return Result.ok(seckillStockReconciler.reconcile());
+    }
+
+    /**
+     * 查询死信队列，from 为起始消息id(包含)，翻页时传上一页最后一条的id
+     */
+    @GetMapping("/dlq")
+    public Result deadLetters(@RequestParam(value = "from", required = false) String from,
+                              @RequestParam(value = "count", defaultValue = "20") Integer count) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", seckillDeadLetterQueue.size());
+        result.put("records", seckillDeadLetterQueue.list(from, Math.min(count, 1000)));
+        return Result.ok(result);
+    }
+
+    /**
+     * 把指定死信重新投递到订单消息流
+     */
+    @PostMapping("/dlq/replay")
+    public Result replay(@RequestBody List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Result.fail("死信id不能为空");
+        }
+        return Result.ok(seckillDeadLetterQueue.replay(ids));
+    }
+}
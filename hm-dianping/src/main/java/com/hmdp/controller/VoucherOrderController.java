@@ -1,6 +1,7 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
@@ -9,11 +10,13 @@ import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.service.IVoucherService;
 import com.hmdp.utils.RedisConstants;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillOrderTracker;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.Resource;
 import java.util.HashMap;
@@ -34,10 +37,59 @@ import java.util.Set;
 public class VoucherOrderController {
     @Autowired
     private IVoucherOrderService voucherOrderService;
+    @Resource
+    private SeckillOrderTracker seckillOrderTracker;
+    @Resource
+    private SeckillProperties seckillProperties;
     @PostMapping("seckill/{id}")
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
         return voucherOrderService.seckillVoucher(voucherId);
     }
 
+    /**
+     * 查询秒杀订单处理状态：pending/persisted/failed
+     */
+    @GetMapping("{id}/status")
+    public Result queryOrderStatus(@PathVariable("id") Long orderId) {
+        return toResult(voucherOrderService.queryOrderStatus(orderId, UserHolder.getUser().getId()));
+    }
+
+    /**
+     * 长轮询订单处理状态：pending 时挂起请求(不占用Tomcat线程)，状态变化或超时后返回
+     *
+     * @param timeout 最长等待毫秒数，不超过 hmdp.seckill.status.max-wait
+     */
+    @GetMapping("{id}/status/wait")
+    public DeferredResult<Result> waitOrderStatus(@PathVariable("id") Long orderId,
+                                                  @RequestParam(value = "timeout", defaultValue = "10000") Long timeout) {
+        Long userId = UserHolder.getUser().getId();
+        long wait = Math.max(0, Math.min(timeout, seckillProperties.getStatus().getMaxWait().toMillis()));
+        // 超时后返回当前状态(仍为pending)
+        DeferredResult<Result> deferred = new DeferredResult<>(wait,
+                () -> toResult(voucherOrderService.queryOrderStatus(orderId, userId)));
+        Map<String, Object> status = voucherOrderService.queryOrderStatus(orderId, userId);
+        if (!isPending(status) || wait == 0) {
+            deferred.setResult(toResult(status));
+            return deferred;
+        }
+        Runnable onChange = () -> {
+            Map<String, Object> changed = voucherOrderService.queryOrderStatus(orderId, userId);
+            if (!isPending(changed)) {
+                deferred.setResult(toResult(changed));
+            }
+        };
+        seckillOrderTracker.addWaiter(orderId, onChange);
+        deferred.onCompletion(() -> seckillOrderTracker.removeWaiter(orderId, onChange));
+        // 注册前状态可能已经变化，再查一次
+        onChange.run();
+        return deferred;
+    }
 
+    private static boolean isPending(Map<String, Object> status) {
+        return status != null && SeckillOrderTracker.PENDING.equals(status.get("status"));
+    }
+
+    private static Result toResult(Map<String, Object> status) {
+        return status == null ? Result.fail("订单不存在") : Result.ok(status);
+    }
 }
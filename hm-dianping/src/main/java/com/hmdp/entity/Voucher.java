@@ -90,6 +90,30 @@ public class Voucher implements Serializable {
     @TableField(exist = false)
     private LocalDateTime endTime;
 
+    /**
+     * 秒杀库存分片数，为空时使用 hmdp.seckill.stock-shards
+     */
+    @TableField(exist = false)
+    private Integer stockShards;
+
+    /**
+     * 下单用户去重方式 set/bitmap，为空时使用 hmdp.seckill.order-dedup
+     */
+    @TableField(exist = false)
+    private String orderDedup;
+
+    /**
+     * 秒杀券每秒允许的请求数，为空时使用 hmdp.seckill.rate-limit.voucher-rate
+     */
+    @TableField(exist = false)
+    private Integer rateLimit;
+
+    /**
+     * 秒杀券允许的突发请求数，为空时等于 rateLimit
+     */
+    @TableField(exist = false)
+    private Integer rateBurst;
+
     /**
      * 创建时间
      */
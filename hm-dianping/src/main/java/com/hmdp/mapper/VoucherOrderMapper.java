@@ -2,6 +2,10 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +17,14 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
 
+    /**
+     * 一条insert批量插入订单，主键或 uk_user_voucher 冲突时整条语句失败
+     *
+     * @return 插入的行数
+     */
+    @Insert("<script>" +
+            "insert into tb_voucher_order (id, user_id, voucher_id) values " +
+            "<foreach collection='orders' item='o' separator=','>(#{o.id}, #{o.userId}, #{o.voucherId})</foreach>" +
+            "</script>")
+    int insertBatch(@Param("orders") List<VoucherOrder> orders);
 }
@@ -4,6 +4,9 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>
  *  服务类
@@ -28,4 +31,21 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
      * @return {@link Result}
      */
     void createVoucherOrder(VoucherOrder voucherOrder);
+
+    /**
+     * 在一个事务中批量创建订单，按券聚合扣减库存
+     *
+     * @param voucherOrders 订单
+     * @return 已落库的订单(本次写入的和重复投递已存在的)，不包含因重复下单跳过的订单
+     */
+    List<VoucherOrder> createVoucherOrders(List<VoucherOrder> voucherOrders);
+
+    /**
+     * 查询秒杀订单处理状态，状态记录过期后按数据库查询
+     *
+     * @param orderId 订单id
+     * @param userId  当前用户id，只能查询自己的订单
+     * @return 包含 orderId/status/voucherId 的状态，订单不存在时返回null
+     */
+    Map<String, Object> queryOrderStatus(Long orderId, Long userId);
 }
@@ -16,5 +16,7 @@ public interface IVoucherService extends IService<Voucher> {
 
     void addSeckillVoucher(Voucher voucher);
 
+    Result addSeckillStock(Long voucherId, Integer amount);
+
     Result queryVoucherOfShop(Long shopId);
 }
@@ -16,8 +16,11 @@ import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheBloomFilter;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
@@ -27,6 +30,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
 import static com.hmdp.utils.RedisConstants.FEED_KEY;
 
 /**
@@ -45,6 +49,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     private StringRedisTemplate stringRedisTemplate;
     @Resource
     private IFollowService followService;
+    @Resource
+    private CacheBloomFilter cacheBloomFilter;
     @Override
     public Result queryHotBlog(Integer current) {
 
@@ -55,37 +61,61 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         // 获取当前页数据
         List<Blog> records = page.getRecords();
         // 查询用户
-        records.forEach(blog -> {
-            this.queryBlogUser(blog);
-            this.isBlogLiked(blog);
-        });
+        this.queryBlogUser(records);
+        this.isBlogLiked(records);
         return Result.ok(records);
     }
 
-    private void isBlogLiked(Blog blog) {
+    /**
+     * 批量判断当前用户是否点赞，使用pipeline一次往返
+     */
+    private void isBlogLiked(List<Blog> blogs) {
         //获取登录用户
-        Long userId = UserHolder.getUser().getId();
+        UserDTO user = UserHolder.getUser();
+        if(user == null || blogs.isEmpty()){
+            return;
+        }
+        String userId = user.getId().toString();
         //判断当前登录用户是否已经点赞
-        String key = BLOG_LIKED_KEY + blog.getId();
-        Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
-        blog.setIsLike(score != null);
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Blog blog : blogs) {
+                conn.zScore(BLOG_LIKED_KEY + blog.getId(), userId);
+            }
+            return null;
+        });
+        for (int i = 0; i < blogs.size(); i++) {
+            blogs.get(i).setIsLike(scores.get(i) != null);
+        }
     }
 
-    private void queryBlogUser(Blog blog) {
-        Long userId = blog.getUserId();
-        User user = userService.getById(userId);
-        blog.setName(user.getNickName());
-        blog.setIcon(user.getIcon());
+    /**
+     * 批量填充笔记作者信息，用户信息走批量缓存查询
+     */
+    private void queryBlogUser(List<Blog> blogs) {
+        List<Long> userIds = blogs.stream().map(Blog::getUserId).collect(Collectors.toList());
+        List<UserDTO> users = userService.queryUserDTOs(userIds);
+        for (int i = 0; i < blogs.size(); i++) {
+            UserDTO user = users.get(i);
+            if(user != null){
+                blogs.get(i).setName(user.getNickName());
+                blogs.get(i).setIcon(user.getIcon());
+            }
+        }
     }
 
     @Override
     public Result queryBlog(Long id) {
+        //布隆过滤器拦截不存在的id
+        if(!cacheBloomFilter.mightContain(CACHE_BLOG_KEY, id)){
+            return Result.fail("笔记不存在");
+        }
         Blog blog = getById(id);
         if(blog == null){
             return Result.fail("笔记不存在");
         }
         //查询blog相关用户
-        queryBlogUser(blog);
+        queryBlogUser(Collections.singletonList(blog));
         return Result.ok(blog);
     }
 
@@ -127,9 +157,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         }
         //解析出其中的用户id
         List<Long> ids = top5.stream().map(Long::valueOf).collect(Collectors.toList());
-        //根据用户id查询用户
-        List<User> users = userService.listByIds(ids);
-        List<UserDTO> userDTOS = users.stream().map(user -> BeanUtil.copyProperties(user, UserDTO.class)).collect(Collectors.toList());
+        //根据用户id查询用户，保持点赞顺序
+        List<UserDTO> userDTOS = userService.queryUserDTOs(ids).stream().filter(Objects::nonNull).collect(Collectors.toList());
         //返回
         return Result.ok(userDTOS);
     }
@@ -145,6 +174,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if(!success){
             return Result.fail("笔记发送失败");
         }
+        cacheBloomFilter.put(CACHE_BLOG_KEY, blog.getId());
         //查询作者所有粉丝
         List<Follow> follows = followService.query().eq("follow_user_id", userId).list();
         //推送笔记给所有粉丝
@@ -190,12 +220,10 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         //4.根据id查询blog
         String idStr = StrUtil.join(",", ids);
         List<Blog> blogs = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
-        for (Blog blog : blogs) {
-            //查询blog相关用户
-            queryBlogUser(blog);
-            //查询是否点赞
-            isBlogLiked(blog);
-        }
+        //查询blog相关用户
+        queryBlogUser(blogs);
+        //查询是否点赞
+        isBlogLiked(blogs);
         //封装并返回
         ScrollResult r = new ScrollResult();
         r.setList(blogs);
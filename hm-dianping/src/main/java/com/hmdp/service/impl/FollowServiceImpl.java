@@ -17,6 +17,7 @@ import org.springframework.stereotype.Service;
 import javax.annotation.Resource;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -79,9 +80,9 @@ public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> impleme
         //解析交集
         List<Long> ids = intersect.stream().map(Long::valueOf).collect(Collectors.toList());
         //根据id查询用户
-        List<UserDTO> users = userService.listByIds(ids)
+        List<UserDTO> users = userService.queryUserDTOs(ids)
                 .stream()
-                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         return Result.ok(users);
     }
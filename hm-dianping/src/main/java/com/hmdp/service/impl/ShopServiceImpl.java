@@ -42,10 +42,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     private IShopService shopService;
     @Override
     public Result queryById(Long id ) {
-        //缓存穿透
-        cacheClient.queryWithPassThough(CACHE_SHOP_KEY,id,Shop.class,this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        //互斥锁解决缓存击穿
-        Shop shop = cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY,id,Shop.class,this::getById,20L,TimeUnit.MINUTES);
+        //逻辑过期解决缓存击穿，未命中时同步加载，数据由 CachePreheater 预热
+        Shop shop = cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY,id,Shop.class,this::getById,CACHE_SHOP_LOGICAL_TTL,TimeUnit.MINUTES);
         if(shop == null){
             return Result.fail("店铺不存在!");
         }
@@ -62,8 +60,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         }
         //更新数据库
         updateById(shop);
-        //删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
+        //删除缓存，同时清除各节点的一级缓存
+        cacheClient.delete(CACHE_SHOP_KEY + id);
         return Result.ok();
     }
 
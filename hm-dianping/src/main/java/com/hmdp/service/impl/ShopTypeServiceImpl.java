@@ -7,6 +7,7 @@ import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheMetrics;
 import com.hmdp.utils.RedisConstants;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -32,13 +33,17 @@ public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> i
     private StringRedisTemplate stringRedisTemplate;
     @Autowired
     private IShopTypeService typeService;
+    @Resource
+    private CacheMetrics cacheMetrics;
     @Override
     public Result queryList() {
         String shopTypeJSON = stringRedisTemplate.opsForValue().get(CACHE_SHOPTYPE_KEY);
         if(StrUtil.isNotBlank(shopTypeJSON)){
+            cacheMetrics.request(CACHE_SHOPTYPE_KEY, CacheMetrics.HIT);
             List<ShopType> shopTypes = JSONUtil.toList(shopTypeJSON, ShopType.class);
             return Result.ok(shopTypes);
         }
+        cacheMetrics.request(CACHE_SHOPTYPE_KEY, CacheMetrics.MISS);
         List<ShopType> typeList = typeService.query().orderByAsc("sort").list();
         if(typeList == null){
             Result.fail("分类不存在");
@@ -1,41 +1,52 @@
 package com.hmdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.RuntimeUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
-import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.Shop;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
-import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.HotKeyDetector;
 import com.hmdp.utils.RedisConstants;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillDeadLetterQueue;
+import com.hmdp.utils.SeckillOrderTracker;
+import com.hmdp.utils.SeckillRateLimiter;
+import com.hmdp.utils.SeckillSchedule;
+import com.hmdp.utils.SeckillStockManager;
+import com.hmdp.utils.SeckillStockWriter;
+import com.hmdp.utils.SoldOutRegistry;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.aop.framework.AopContext;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.geo.Point;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
 import static com.hmdp.utils.RedisConstants.SECKILL_VOUCHER_ORDER;
 
 /**
@@ -50,29 +61,68 @@ import static com.hmdp.utils.RedisConstants.SECKILL_VOUCHER_ORDER;
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
-    @Resource
-    private ISeckillVoucherService seckillVoucherService;
-
     @Resource
     private RedisIdWorker redisIdWorker;
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
-    @Resource
-    private RedissonClient redissonClient;
     @Resource
     private ShopServiceImpl shopService;
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+    @Resource
+    private SeckillProperties seckillProperties;
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+    @Resource
+    private SeckillSchedule seckillSchedule;
+    @Resource
+    private SeckillRateLimiter seckillRateLimiter;
+    @Resource
+    private SeckillStockWriter seckillStockWriter;
+    @Resource
+    private SeckillStockManager seckillStockManager;
+    @Resource
+    private SeckillOrderTracker seckillOrderTracker;
+    @Resource
+    private SeckillDeadLetterQueue seckillDeadLetterQueue;
+
+    /**
+     * 消息id -> 最近一次处理失败的原因，移入死信队列时记录
+     */
+    private final Cache<String, String> lastErrors = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
 
     /**
-     * 线程池
+     * 线程池: 读取消息的线程
      */
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("seckill-order-reader-", false));
+
+    /**
+     * 处理订单的分区线程，同一用户的订单固定由同一个线程按顺序处理
+     */
+    private ExecutorService[] lanes;
+
+    /**
+     * 当前实例在消费者组中的名称，各实例不同
+     */
+    private String consumerName;
+
+    private volatile boolean running = true;
+
+    /**
+     * 认领到其他消费者的消息后置位，读取线程随后处理本消费者的pending-list
+     */
+    private volatile boolean drainRequested;
 
     /**
      * 队列名
      */
-    private static final String queueName = "stream.orders";
+    private static final String queueName = SECKILL_ORDER_STREAM;
 
     /**
      * 线程任务: 不断从消息队列中获取订单
@@ -80,12 +130,22 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     private class VoucherOrderHandler implements Runnable {
         @Override
         public void run() {
-            while (true) {
+            SeckillProperties.Consumer consumer = seckillProperties.getConsumer();
+            // 启动时先处理本消费者上次运行时已读取未确认的消息
+            handlePendingList();
+            long nextDrain = System.currentTimeMillis() + consumer.getClaimInterval().toMillis();
+            while (running) {
                 try {
-                    // 尝试读取消息队列
+                    // 认领到消息后或定时处理本消费者的pending-list，认领的消息和处理失败的消息都在这里重试
+                    if (drainRequested || System.currentTimeMillis() >= nextDrain) {
+                        drainRequested = false;
+                        nextDrain = System.currentTimeMillis() + consumer.getClaimInterval().toMillis();
+                        handlePendingList();
+                    }
+                    // 尝试批量读取消息队列
                     List<MapRecord<String, Object, Object>> messageList = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                            Consumer.from("g1", consumerName),
+                            StreamReadOptions.empty().count(consumer.getBatchSize()).block(consumer.getMaxWait()),
                             StreamOffset.create(queueName, ReadOffset.lastConsumed())
                     );
                     // 2、判断消息获取是否成功
@@ -93,17 +153,10 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                         // 2.1 消息获取失败，说明没有消息，进入下一次循环获取消息
                         continue;
                     }
-                    // 3、消息获取成功，可以下单
-                    // 将消息转成VoucherOrder对象
-                    MapRecord<String, Object, Object> record = messageList.get(0);
-                    Map<Object, Object> messageMap = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(messageMap, new VoucherOrder(), true);
-                    handleVoucherOrder(voucherOrder);
-                    // 4、ACK确认 SACK stream.orders g1 id
-                    stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", record.getId());
-
+                    // 3、消息获取成功，按用户分区后并行下单并ACK
+                    dispatch(messageList);
                 } catch (Exception e) {
-                    log.info("处理异常订单");
+                    log.error("处理异常订单", e);
                     // 处理积压消息
                     handlePendingList();
                 }
@@ -112,12 +165,13 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     }
 
     private void handlePendingList() {
-        while (true) {
+        int failures = 0;
+        while (running) {
             try {
-                // 1、从pendingList中获取订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 1000 STREAMS streams.order 0
+                // 1、从pendingList中获取订单信息 XREADGROUP GROUP g1 c1 COUNT n BLOCK 1000 STREAMS streams.order 0
                 List<MapRecord<String, Object, Object>> messageList = stringRedisTemplate.opsForStream().read(
-                        Consumer.from("g1", "c1"),
-                        StreamReadOptions.empty().count(1).block(Duration.ofSeconds(1)),
+                        Consumer.from("g1", consumerName),
+                        StreamReadOptions.empty().count(seckillProperties.getConsumer().getBatchSize()).block(Duration.ofSeconds(1)),
                         StreamOffset.create(queueName, ReadOffset.from("0"))
                 );
                 // 2、判断pendingList中是否有效性
@@ -125,61 +179,227 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                     // 2.1 pendingList中没有消息，直接结束循环
                     break;
                 }
-                // 3、pendingList中有消息
-                // 将消息转成VoucherOrder对象
-                MapRecord<String, Object, Object> record = messageList.get(0);
-                Map<Object, Object> messageMap = record.getValue();
-                VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(messageMap, new VoucherOrder(), true);
-                handleVoucherOrder(voucherOrder);
-                // 4、ACK确认 SACK stream.orders g1 id
-                stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", record.getId());
+                // 3、pendingList中有消息，重试次数耗尽的移入死信队列，其余整批下单并ACK
+                dispatch(retryable(messageList, deliveryCounts(messageList)));
+                failures = 0;
             } catch (Exception e) {
                 log.error("处理订单异常", e);
-                // 这里不用调自己，直接就进入下一次循环，再从pendingList中取，这里只需要休眠一下，防止获取消息太频繁
-                try {
-                    Thread.sleep(20);
-                } catch (InterruptedException ex) {
-                    log.error("线程休眠异常", ex);
+                // 休眠后再从pendingList中取，连续失败时间隔翻倍，避免同一条坏消息被频繁重试
+                if (!backoff(failures++)) {
+                    return;
                 }
             }
         }
     }
 
-    private void handleVoucherOrder(VoucherOrder voucherOrder) {
-        Long userId = voucherOrder.getUserId();
-        Long voucherId = voucherOrder.getVoucherId();
+    /**
+     * 查询本消费者pending-list中这批消息的投递次数(XPENDING)，读取pending-list本身也会使投递次数加1
+     */
+    private Map<RecordId, Long> deliveryCounts(List<? extends MapRecord<String, ?, ?>> records) {
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(queueName, Consumer.from("g1", consumerName),
+                Range.closed(records.get(0).getId().getValue(), records.get(records.size() - 1).getId().getValue()),
+                records.size());
+        Map<RecordId, Long> counts = new HashMap<>(records.size() * 2);
+        pending.forEach(m -> counts.put(m.getId(), m.getTotalDeliveryCount()));
+        return counts;
+    }
+
+    /**
+     * 投递次数超过 max-deliveries 的消息移入死信队列，返回仍需处理的消息
+     */
+    private List<MapRecord<String, ?, ?>> retryable(List<? extends MapRecord<String, ?, ?>> records,
+                                                    Map<RecordId, Long> deliveryCounts) {
+        int maxDeliveries = seckillProperties.getConsumer().getMaxDeliveries();
+        List<MapRecord<String, ?, ?>> retryable = new ArrayList<>(records.size());
+        for (MapRecord<String, ?, ?> record : records) {
+            long deliveries = deliveryCounts.getOrDefault(record.getId(), 1L);
+            if (deliveries <= maxDeliveries) {
+                retryable.add(record);
+                continue;
+            }
+            String reason = lastErrors.getIfPresent(record.getId().getValue());
+            try {
+                seckillDeadLetterQueue.deadLetter("g1", record, deliveries, reason == null ? "unknown" : reason);
+                lastErrors.invalidate(record.getId().getValue());
+            } catch (Exception e) {
+                // 不影响同批其他消息，该消息留在pending-list中，下次处理时再移入
+                log.error("订单消息移入死信队列失败, messageId={}", record.getId(), e);
+            }
+        }
+        return retryable;
+    }
+
+    /**
+     * 第n次连续失败后休眠 retry-backoff * 2^n，不超过 max-retry-backoff
+     *
+     * @return 是否继续，线程被中断时返回false
+     */
+    private boolean backoff(int failures) {
+        SeckillProperties.Consumer consumer = seckillProperties.getConsumer();
+        long delay = Math.min(consumer.getMaxRetryBackoff().toMillis(),
+                consumer.getRetryBackoff().toMillis() << Math.min(failures, 20));
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-        RLock lock = redissonClient.getLock(RedisConstants.LOCK_ORDER_KEY + userId);
-        boolean isLock = lock.tryLock();
+    /**
+     * 认领其他消费者空闲过久的消息(消费者所在实例已下线)，只转移归属，由读取线程在pending-list中处理，
+     * 调度线程不执行下单；JUSTID 不增加投递次数，读取pending-list时计数，重试次数限制同样生效
+     */
+    @Scheduled(initialDelayString = "#{@seckillProperties.consumer.claimInterval.toMillis()}",
+            fixedDelayString = "#{@seckillProperties.consumer.claimInterval.toMillis()}")
+    public void claimIdlePending() {
+        SeckillProperties.Consumer consumer = seckillProperties.getConsumer();
+        try {
+            PendingMessages pending = stringRedisTemplate.opsForStream()
+                    .pending(queueName, "g1", Range.unbounded(), consumer.getBatchSize());
+            RecordId[] idle = pending.stream()
+                    .filter(m -> !consumerName.equals(m.getConsumerName()))
+                    .filter(m -> m.getElapsedTimeSinceLastDelivery().compareTo(consumer.getClaimIdle()) >= 0)
+                    .map(PendingMessage::getId)
+                    .toArray(RecordId[]::new);
+            if (idle.length == 0) {
+                return;
+            }
+            // XCLAIM 带最小空闲时间，多个实例同时认领时只有一个成功
+            List<RecordId> claimed = stringRedisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                    connection.xClaimJustId(queueName.getBytes(StandardCharsets.UTF_8), "g1", consumerName,
+                            XClaimOptions.minIdle(consumer.getClaimIdle()).ids(idle)));
+            if (claimed == null || claimed.isEmpty()) {
+                return;
+            }
+            log.info("认领空闲订单消息{}条", claimed.size());
+            drainRequested = true;
+        } catch (Exception e) {
+            log.error("认领空闲订单消息失败", e);
+        }
+    }
 
-        if (!isLock) {
-            log.error("一人只能下一单");
+    /**
+     * 按userId把消息分到各个分区线程，等待全部处理完成；
+     * 同一用户的消息总在同一分区内顺序处理
+     */
+    private void dispatch(List<? extends MapRecord<String, ?, ?>> records) {
+        if (records.isEmpty()) {
             return;
         }
+        if (lanes.length == 1) {
+            handleRecords(records);
+            return;
+        }
+        Map<Integer, List<MapRecord<String, ?, ?>>> partitions = new HashMap<>();
+        for (MapRecord<String, ?, ?> record : records) {
+            // 按userId原值分区，字段缺失或格式错误的消息也能分到线程，处理失败后按重试次数移入死信队列
+            int lane = Math.floorMod(String.valueOf(record.getValue().get("userId")).hashCode(), lanes.length);
+            partitions.computeIfAbsent(lane, k -> new ArrayList<>()).add(record);
+        }
+        List<Future<?>> futures = new ArrayList<>(partitions.size());
+        partitions.forEach((lane, part) -> futures.add(lanes[lane].submit(() -> handleRecords(part))));
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("部分订单处理失败", failure.getCause());
+        }
+    }
 
+    /**
+     * 一批消息在一个事务中创建订单，成功后一次ACK；
+     * 批量失败时逐条处理，失败的消息和格式错误的消息留在pending-list中等待重试，重试次数耗尽后移入死信队列
+     */
+    private void handleRecords(List<? extends MapRecord<String, ?, ?>> batch) {
+        List<MapRecord<String, ?, ?>> records = new ArrayList<>(batch.size());
+        List<VoucherOrder> voucherOrders = new ArrayList<>(batch.size());
+        int failed = 0;
+        for (MapRecord<String, ?, ?> record : batch) {
+            VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true);
+            if (voucherOrder.getId() == null || voucherOrder.getUserId() == null || voucherOrder.getVoucherId() == null) {
+                // 字段缺失或格式错误，不写数据库，留在pending-list中等待移入死信队列
+                failed++;
+                log.error("订单消息格式错误, messageId={}, message={}", record.getId(), record.getValue());
+                lastErrors.put(record.getId().getValue(), "消息格式错误");
+                continue;
+            }
+            records.add(record);
+            voucherOrders.add(voucherOrder);
+        }
+        if (records.isEmpty()) {
+            throw new IllegalStateException(failed + "条订单消息格式错误");
+        }
+        boolean batched = false;
         try {
-            proxy.createVoucherOrder(voucherOrder);
-        }finally {
-            lock.unlock();
-            log.info("释放锁完成");
+            List<VoucherOrder> persisted = proxy.createVoucherOrders(voucherOrders);
+            acknowledge(records);
+            markProcessed(voucherOrders, persisted);
+            batched = true;
+        } catch (Exception e) {
+            log.warn("批量创建订单失败，逐条处理, size={}", records.size(), e);
+        }
+        for (int i = 0; !batched && i < records.size(); i++) {
+            MapRecord<String, ?, ?> record = records.get(i);
+            try {
+                List<VoucherOrder> order = Collections.singletonList(voucherOrders.get(i));
+                List<VoucherOrder> persisted = handleVoucherOrder(order);
+                acknowledge(Collections.singletonList(record));
+                markProcessed(order, persisted);
+            } catch (Exception e) {
+                failed++;
+                log.error("创建订单失败, messageId={}", record.getId(), e);
+                // 消息留在pending-list中，订单状态保持pending，失败原因在移入死信队列时记录
+                lastErrors.put(record.getId().getValue(),
+                        StrUtil.maxLength(StrUtil.blankToDefault(e.getMessage(), e.getClass().getName()), 200));
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException(failed + "条订单处理失败，等待pending-list重试");
         }
     }
 
     /**
-     * 加载 判断秒杀券库存是否充足 并且 判断用户是否已下单 的Lua脚本
+     * 一次XACK确认多条消息
      */
-    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private void acknowledge(List<? extends MapRecord<String, ?, ?>> records) {
+        RecordId[] ids = records.stream().map(record -> record.getId()).toArray(RecordId[]::new);
+        stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", ids);
+    }
 
-    static {
-        SECKILL_SCRIPT = new DefaultRedisScript<>();
-        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
-        SECKILL_SCRIPT.setResultType(Long.class);
+    private List<VoucherOrder> handleVoucherOrder(List<VoucherOrder> voucherOrders) {
+        // 一人一单由Lua脚本和唯一索引保证，重复投递的消息落库前按 (user_id, voucher_id) 查出后跳过，不需要加锁
+        return proxy.createVoucherOrders(voucherOrders);
+    }
+
+    /**
+     * 更新订单状态：已落库的为 persisted，因用户已有其他订单而跳过的为 rejected
+     */
+    private void markProcessed(List<VoucherOrder> voucherOrders, List<VoucherOrder> persisted) {
+        seckillOrderTracker.markPersisted(persisted);
+        if (persisted.size() == voucherOrders.size()) {
+            return;
+        }
+        Set<Long> persistedIds = persisted.stream().map(VoucherOrder::getId).collect(Collectors.toSet());
+        seckillOrderTracker.markRejected(voucherOrders.stream()
+                .filter(order -> !persistedIds.contains(order.getId()))
+                .collect(Collectors.toList()), "重复下单");
     }
 
     /**
-     * VoucherOrderServiceImpl类的代理对象
-     * 将代理对象的作用域进行提升，方面子线程取用
+     * VoucherOrderServiceImpl类的代理对象，消费线程通过它调用事务方法
      */
+    @Lazy
+    @Resource
     private IVoucherOrderService proxy;
     /**
      * 抢购秒杀券
@@ -189,19 +409,36 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
      */
     @Override
     public Result seckillVoucher(Long voucherId) {
+        // 不在秒杀时间内或券不存在，直接返回
+        switch (seckillSchedule.admit(voucherId)) {
+            case UNKNOWN:
+                return Result.fail("秒杀券不存在或已结束");
+            case NOT_STARTED:
+                return Result.fail("秒杀尚未开始");
+            case ENDED:
+                return Result.fail("秒杀已经结束");
+            default:
+                break;
+        }
+        // 已售罄直接返回，不生成订单id也不访问redis
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            return Result.fail("库存不足");
+        }
         Long userId = UserHolder.getUser().getId();
+        // 限流，超限时返回建议的重试等待毫秒数
+        long retryAfter = seckillRateLimiter.tryAcquire(userId, voucherId);
+        if (retryAfter > 0) {
+            return Result.fail("请求过于频繁，请稍后再试", Collections.singletonMap("retryAfter", retryAfter));
+        }
+        // 统计库存key的访问热度，库存以Lua脚本为准，只探测不做本地副本
+        hotKeyDetector.record(RedisConstants.SECKILL_STOCK_KEY + voucherId);
         long orderId = redisIdWorker.nextId(SECKILL_VOUCHER_ORDER);
 
         // 1、执行Lua脚本，判断用户是否具有秒杀资格
         Long result = null;
         try {
-            result = stringRedisTemplate.execute(
-                    SECKILL_SCRIPT,
-                    Collections.emptyList(),
-                    voucherId.toString(),
-                    userId.toString(),
-                    String.valueOf(orderId)
-            );
+            result = seckillStockManager.seckill(voucherId, userId, orderId,
+                    seckillProperties.getStatus().getTtl().getSeconds());
         } catch (Exception e) {
             log.error("Lua脚本执行失败");
             throw new RuntimeException(e);
@@ -209,13 +446,13 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         if (result != null && !result.equals(0L)) {
             // result为1表示库存不足，result为2表示用户已下单
             int r = result.intValue();
+            if (r == 1) {
+                soldOutRegistry.markSoldOut(voucherId);
+            }
             return Result.fail(r == 2 ? "不能重复下单" : "库存不足");
         }
 
         // 2、result为0，下单成功，直接返回ok
-        // 索取锁成功，创建代理对象，使用代理对象调用第三方事务方法， 防止事务失效
-        IVoucherOrderService proxy = (IVoucherOrderService) AopContext.currentProxy();
-        this.proxy = proxy;
         return Result.ok(orderId);
     }
 
@@ -228,40 +465,84 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Transactional
     @Override
     public void createVoucherOrder(VoucherOrder voucherOrder) {
-        Long userId = voucherOrder.getUserId();
-        Long voucherId = voucherOrder.getVoucherId();
-
-        // 1、判断用户是否已购买过此优惠券
-        int count = this.count(new LambdaQueryWrapper<VoucherOrder>()
-                .eq(VoucherOrder::getUserId, userId)
-                .eq(VoucherOrder::getVoucherId, voucherId));
-
-        if (count >= 1) {
-            log.error("用户{}已购买过优惠券{}", userId, voucherId);
-            throw new RuntimeException("不能重复购买同一优惠券");
-        }
+        createVoucherOrders(Collections.singletonList(voucherOrder));
+    }
 
-        // 2、更新秒杀券库存
-        boolean updateSuccess = seckillVoucherService.update(new LambdaUpdateWrapper<SeckillVoucher>()
-                .eq(SeckillVoucher::getVoucherId, voucherId)
-                .gt(SeckillVoucher::getStock, 0)
-                .setSql("stock = stock - 1"));
+    @Transactional
+    @Override
+    public List<VoucherOrder> createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        // 按券分组，先按 uk_user_voucher 查出这些用户已落库的订单：订单id相同为消息重复投递，不同为重复下单，都跳过；
+        // 其余订单一条insert批量写入，主键冲突等其他错误直接失败回滚，消息留在pending-list中重试。
+        // 插入的行数即为该券需要扣减的库存，事务提交后交给 SeckillStockWriter 定时回写
+        Map<Long, List<VoucherOrder>> byVoucher = voucherOrders.stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, LinkedHashMap::new, Collectors.toList()));
+        List<VoucherOrder> persisted = new ArrayList<>(voucherOrders.size());
+        byVoucher.forEach((voucherId, orders) -> {
+            Map<Long, Long> existing = lambdaQuery()
+                    .select(VoucherOrder::getId, VoucherOrder::getUserId)
+                    .eq(VoucherOrder::getVoucherId, voucherId)
+                    .in(VoucherOrder::getUserId, orders.stream().map(VoucherOrder::getUserId).collect(Collectors.toSet()))
+                    .list().stream()
+                    .collect(Collectors.toMap(VoucherOrder::getUserId, VoucherOrder::getId));
+            List<VoucherOrder> inserts = new ArrayList<>(orders.size());
+            for (VoucherOrder order : orders) {
+                Long existingId = existing.get(order.getUserId());
+                if (existingId == null) {
+                    inserts.add(order);
+                } else if (existingId.equals(order.getId())) {
+                    log.debug("订单{}已落库，忽略重复消息", order.getId());
+                    persisted.add(order);
+                } else {
+                    log.warn("用户{}已有优惠券{}的订单{}，忽略重复下单的订单{}", order.getUserId(), voucherId, existingId, order.getId());
+                }
+            }
+            if (inserts.isEmpty()) {
+                return;
+            }
+            int inserted = baseMapper.insertBatch(inserts);
+            if (inserted != inserts.size()) {
+                throw new IllegalStateException("优惠券" + voucherId + "订单写入" + inserted + "条，应为" + inserts.size() + "条");
+            }
+            seckillStockWriter.decrement(voucherId, inserted);
+            persisted.addAll(inserts);
+        });
+        return persisted;
+    }
 
-        if (!updateSuccess) {
-            throw new RuntimeException("库存不足或更新失败");
+    @Override
+    public Map<String, Object> queryOrderStatus(Long orderId, Long userId) {
+        Map<Object, Object> tracked = seckillOrderTracker.status(orderId);
+        Map<String, Object> status = new LinkedHashMap<>(8);
+        status.put("orderId", orderId);
+        if (!tracked.isEmpty()) {
+            if (!userId.toString().equals(tracked.get("userId"))) {
+                return null;
+            }
+            status.put("status", tracked.get("status"));
+            status.put("voucherId", Long.valueOf((String) tracked.get("voucherId")));
+            if (tracked.containsKey("reason")) {
+                status.put("reason", tracked.get("reason"));
+            }
+            return status;
         }
-
-
-        // 3、创建订单
-        boolean saveSuccess = this.save(voucherOrder);
-        if (!saveSuccess) {
-            throw new RuntimeException("创建订单失败");
+        // 状态记录已过期(或秒杀时未记录)，以数据库为准
+        VoucherOrder voucherOrder = getById(orderId);
+        if (voucherOrder == null || !userId.equals(voucherOrder.getUserId())) {
+            return null;
         }
+        status.put("status", SeckillOrderTracker.PERSISTED);
+        status.put("voucherId", voucherOrder.getVoucherId());
+        return status;
     }
 
     @PostConstruct
     private void init() {
-        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+        SeckillProperties.Consumer consumer = seckillProperties.getConsumer();
+        consumerName = StrUtil.blankToDefault(consumer.getName(), NetUtil.getLocalHostName() + "-" + RuntimeUtil.getPid());
+        lanes = new ExecutorService[Math.max(1, consumer.getThreads())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(new NamedThreadFactory("seckill-order-lane-" + i + "-", false));
+        }
 
         // 尝试创建消费者组
         try {
@@ -284,7 +565,32 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         } catch (Exception e) {
             log.error("创建消费者组异常", e);
         }
-        log.info("秒杀订单处理线程启动成功");
+        // 消费者组创建后再启动读取线程，启动时要先读取本消费者的pending-list
+        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+        log.info("秒杀订单处理线程启动成功, consumer={}, threads={}", consumerName, lanes.length);
+    }
+
+    /**
+     * 按顺序停机：读取线程 -> 订单线程 -> 回写库存，保证所有已落库订单的扣减量都写入数据库
+     */
+    @PreDestroy
+    private void destroy() throws InterruptedException {
+        running = false;
+        SECKILL_ORDER_EXECUTOR.shutdown();
+        // 读取线程最多阻塞 max-wait 后退出
+        long timeout = seckillProperties.getConsumer().getMaxWait().toMillis() + 5000;
+        if (!SECKILL_ORDER_EXECUTOR.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+            log.warn("订单读取线程未能在{}ms内结束", timeout);
+        }
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                log.warn("订单处理线程未能在{}ms内结束", timeout);
+            }
+        }
+        seckillStockWriter.flush();
     }
 
 }
\ No newline at end of file
@@ -10,6 +10,10 @@ import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.service.IVoucherService;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillRateLimiter;
+import com.hmdp.utils.SeckillSchedule;
+import com.hmdp.utils.SeckillStockManager;
+import com.hmdp.utils.SoldOutRegistry;
 import com.hmdp.utils.UserHolder;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -21,8 +25,6 @@ import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.List;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
-
 /**
  * <p>
  *  服务实现类
@@ -38,6 +40,14 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     private ISeckillVoucherService seckillVoucherService;
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private SeckillStockManager seckillStockManager;
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+    @Resource
+    private SeckillSchedule seckillSchedule;
+    @Resource
+    private SeckillRateLimiter seckillRateLimiter;
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
@@ -57,7 +67,31 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
-        //保存秒杀库存的到redis
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY+voucher.getId(),voucher.getStock().toString());
+        //保存秒杀库存的到redis，热门券可按 stockShards 拆分到多个key
+        seckillStockManager.init(voucher.getId(), voucher.getStock(), voucher.getStockShards(), voucher.getOrderDedup());
+        //保存限流配置
+        seckillRateLimiter.configure(voucher.getId(), voucher.getRateLimit(), voucher.getRateBurst());
+        //登记秒杀时间窗口
+        seckillSchedule.put(voucher.getId(), voucher.getBeginTime(), voucher.getEndTime());
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Result addSeckillStock(Long voucherId, Integer amount) {
+        if (amount == null || amount <= 0) {
+            return Result.fail("补充数量必须大于0");
+        }
+        // 补充数据库库存
+        boolean updated = seckillVoucherService.update()
+                .setSql("stock = stock + " + amount)
+                .eq("voucher_id", voucherId)
+                .update();
+        if (!updated) {
+            return Result.fail("秒杀券不存在");
+        }
+        // 补充redis库存，并清除各节点的售罄标记
+        seckillStockManager.replenish(voucherId, amount);
+        soldOutRegistry.reset(voucherId);
+        return Result.ok();
     }
-}
\ No newline at end of file
+}
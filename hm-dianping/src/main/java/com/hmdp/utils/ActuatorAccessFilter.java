@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.AdminProperties;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * actuator 端点访问控制：健康检查公开，其余端点(指标等)需要携带 Authorization: Bearer {hmdp.admin.actuator-token}
+ * actuator 端点不经过 MVC 拦截器，因此使用过滤器
+ */
+public class ActuatorAccessFilter extends OncePerRequestFilter {
+    private static final String HEALTH_PATH = "/actuator/health";
+    private static final String BEARER = "Bearer ";
+
+    private final AdminProperties adminProperties;
+
+    public ActuatorAccessFilter(AdminProperties adminProperties) {
+        this.adminProperties = adminProperties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (HEALTH_PATH.equals(path) || path.startsWith(HEALTH_PATH + "/") || authorized(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(401);
+    }
+
+    private boolean authorized(HttpServletRequest request) {
+        String token = adminProperties.getActuatorToken();
+        String header = request.getHeader("Authorization");
+        // 未配置token时只开放健康检查
+        if (StrUtil.isBlank(token) || header == null || !header.startsWith(BEARER)) {
+            return false;
+        }
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                header.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+}
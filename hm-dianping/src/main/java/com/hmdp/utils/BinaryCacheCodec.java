@@ -0,0 +1,89 @@
+package com.hmdp.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 紧凑二进制编解码
+ * 格式: [魔数 1字节][版本 1字节][逻辑过期时间 8字节][重建耗时 4字节][Smile编码的数据]
+ * 过期时间位于固定头部，无需解码数据即可判断是否过期；版本1没有重建耗时字段，仍可读取
+ */
+public class BinaryCacheCodec implements CacheCodec {
+    /**
+     * JSON文本不会以该字节开头，用于区分新旧格式
+     */
+    public static final byte MAGIC = (byte) 0xB1;
+    private static final byte VERSION = 2;
+    private static final byte VERSION_1 = 1;
+    public static final int HEADER_LENGTH = 14;
+    private static final int HEADER_LENGTH_V1 = 10;
+
+    private final ObjectMapper mapper;
+
+    public BinaryCacheCodec() {
+        SmileFactory factory = new SmileFactory();
+        // 格式由自定义头部标识，省去Smile自身的4字节头
+        factory.disable(SmileGenerator.Feature.WRITE_HEADER);
+        factory.disable(SmileParser.Feature.REQUIRE_HEADER);
+        this.mapper = new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return encode(value, 0);
+    }
+
+    @Override
+    public byte[] encode(Object value, long expireAt, int delta) {
+        try {
+            byte[] payload = mapper.writeValueAsBytes(value);
+            return ByteBuffer.allocate(HEADER_LENGTH + payload.length)
+                    .put(MAGIC).put(VERSION).putLong(expireAt).putInt(delta).put(payload)
+                    .array();
+        } catch (IOException e) {
+            throw new RuntimeException("缓存编码失败", e);
+        }
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH_V1 && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        int headerLength = headerLength(bytes);
+        try {
+            return mapper.readValue(bytes, headerLength, bytes.length - headerLength, type);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存解码失败: " + Arrays.toString(Arrays.copyOf(bytes, headerLength)), e);
+        }
+    }
+
+    @Override
+    public <R> CacheEntry<R> decodeWithExpire(byte[] bytes, Class<R> type) {
+        int delta = bytes[1] == VERSION_1 ? 0 : ByteBuffer.wrap(bytes, 10, 4).getInt();
+        return new CacheEntry<>(decode(bytes, type), expireAt(bytes), delta);
+    }
+
+    @Override
+    public long expireAt(byte[] bytes) {
+        return ByteBuffer.wrap(bytes, 2, 8).getLong();
+    }
+
+    private static int headerLength(byte[] bytes) {
+        return bytes[1] == VERSION_1 ? HEADER_LENGTH_V1 : HEADER_LENGTH;
+    }
+}
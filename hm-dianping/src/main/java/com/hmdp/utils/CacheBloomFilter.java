@@ -0,0 +1,227 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.mapper.BlogMapper;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 按缓存key前缀维护已存在id的布隆过滤器，拦截不存在的id，防止缓存穿透
+ * 新增id通过发布订阅同步，错过消息的节点对大于加载时最大id的请求一律放行；
+ * 过滤器定时或填充率过高时在后台重建，重建完成后替换
+ */
+@Slf4j
+@Component
+public class CacheBloomFilter {
+    /**
+     * 启动时分批加载id的批次大小
+     */
+    private static final int LOAD_BATCH_SIZE = 5000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+    @Resource
+    private CacheProperties cacheProperties;
+    @Resource
+    private ShopMapper shopMapper;
+    @Resource
+    private BlogMapper blogMapper;
+    @Resource
+    private UserMapper userMapper;
+
+    /**
+     * 加载完成的过滤器，加载完成前一律放行
+     */
+    private final Map<String, Loaded> filters = new ConcurrentHashMap<>();
+    /**
+     * 正在加载的过滤器，加载期间新增的id同时写入，替换后不会丢失
+     */
+    private final Map<String, BloomFilter> building = new ConcurrentHashMap<>();
+    private final Map<String, BaseMapper<?>> sources = new LinkedHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        sources.put(CACHE_SHOP_KEY, shopMapper);
+        sources.put(CACHE_BLOG_KEY, blogMapper);
+        sources.put(CACHE_USER_KEY, userMapper);
+        listenerContainer.addMessageListener(this::onPutMessage, new ChannelTopic(CACHE_BLOOM_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!cacheProperties.getBloom().isEnabled()) {
+            return;
+        }
+        sources.forEach(this::load);
+    }
+
+    /**
+     * 定时检查，超过重建间隔或填充率过高时重新加载
+     */
+    @Scheduled(initialDelayString = "#{@cacheProperties.bloom.checkInterval.toMillis()}",
+            fixedDelayString = "#{@cacheProperties.bloom.checkInterval.toMillis()}")
+    public void rebuildIfNeeded() {
+        CacheProperties.Bloom bloom = cacheProperties.getBloom();
+        if (!bloom.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        sources.forEach((keyPrefix, mapper) -> {
+            Loaded loaded = filters.get(keyPrefix);
+            if (loaded == null) {
+                // 启动时加载失败，重试
+                load(keyPrefix, mapper);
+                return;
+            }
+            double fillRatio = loaded.filter.fillRatio();
+            if (fillRatio > bloom.getMaxFillRatio()
+                    || now - loaded.loadedAt >= bloom.getRebuildInterval().toMillis()) {
+                log.info("重建布隆过滤器 {}, 填充率={}", keyPrefix, String.format("%.4f", fillRatio));
+                load(keyPrefix, mapper);
+            }
+        });
+    }
+
+    /**
+     * id是否可能存在，未配置过滤器、尚未加载完成或id大于加载时的最大id时返回true
+     */
+    public boolean mightContain(String keyPrefix, Object id) {
+        Loaded loaded = filters.get(keyPrefix);
+        if (loaded == null || loaded.filter.mightContain(id)) {
+            return true;
+        }
+        // 加载之后新增的id，本节点可能错过了广播，交给数据库判断
+        return id instanceof Number && ((Number) id).longValue() > loaded.maxId;
+    }
+
+    /**
+     * 新增数据后登记id，并广播给其他节点
+     */
+    public void put(String keyPrefix, Object id) {
+        if (!putLocal(keyPrefix, id)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CACHE_BLOOM_CHANNEL, keyPrefix + "|" + id);
+        } catch (Exception e) {
+            log.warn("广播布隆过滤器新增id失败, prefix={}, id={}", keyPrefix, id, e);
+        }
+    }
+
+    /**
+     * 各过滤器的容量与填充率
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        filters.forEach((prefix, loaded) -> {
+            BloomFilter filter = loaded.filter;
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("rebuilding", building.containsKey(prefix));
+            stat.put("maxId", loaded.maxId);
+            stat.put("loadedAt", loaded.loadedAt);
+            stat.put("expectedInsertions", filter.expectedInsertions());
+            stat.put("fpp", filter.fpp());
+            stat.put("bitSize", filter.bitSize());
+            stat.put("hashCount", filter.hashCount());
+            stat.put("fillRatio", filter.fillRatio());
+            stats.put(prefix, stat);
+        });
+        return stats;
+    }
+
+    private boolean putLocal(String keyPrefix, Object id) {
+        BloomFilter next = building.get(keyPrefix);
+        if (next != null) {
+            next.put(id);
+        }
+        Loaded loaded = filters.get(keyPrefix);
+        if (loaded != null) {
+            loaded.filter.put(id);
+        }
+        return next != null || loaded != null;
+    }
+
+    private synchronized <T> void load(String keyPrefix, BaseMapper<T> mapper) {
+        try {
+            long start = System.currentTimeMillis();
+            CacheProperties.Bloom bloom = cacheProperties.getBloom();
+            int count = mapper.selectCount(null);
+            // 预留增长空间，避免新增数据后误判率迅速上升
+            long expected = Math.max((long) (count * bloom.getGrowthFactor()), bloom.getMinExpectedInsertions());
+            BloomFilter filter = new BloomFilter(expected, bloom.getFpp());
+            // 先登记再加载，加载期间新增的id不会丢失；旧过滤器继续使用到加载完成
+            building.put(keyPrefix, filter);
+            // 按主键分批读取，只查询id列
+            long lastId = 0;
+            while (true) {
+                List<Object> ids = mapper.selectObjs(new QueryWrapper<T>()
+                        .select("id").gt("id", lastId).orderByAsc("id").last("limit " + LOAD_BATCH_SIZE));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                for (Object id : ids) {
+                    filter.put(id);
+                }
+                lastId = ((Number) ids.get(ids.size() - 1)).longValue();
+                if (ids.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+            }
+            filters.put(keyPrefix, new Loaded(filter, lastId, start));
+            log.info("布隆过滤器 {} 加载完成, 数量={}, bit数={}, 填充率={}, 耗时{}ms", keyPrefix, count,
+                    filter.bitSize(), String.format("%.4f", filter.fillRatio()), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 加载失败时保留旧过滤器，首次加载失败则不启用，退化为原有的空值缓存
+            log.error("布隆过滤器 {} 加载失败", keyPrefix, e);
+        } finally {
+            building.remove(keyPrefix);
+        }
+    }
+
+    private void onPutMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int idx = body.lastIndexOf('|');
+        if (idx < 0) {
+            return;
+        }
+        putLocal(body.substring(0, idx), body.substring(idx + 1));
+    }
+
+    private static class Loaded {
+        private final BloomFilter filter;
+        /**
+         * 加载时的最大id
+         */
+        private final long maxId;
+        private final long loadedAt;
+
+        private Loaded(BloomFilter filter, long maxId, long loadedAt) {
+            this.filter = filter;
+            this.maxId = maxId;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.hmdp.utils;
 
+import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
-import com.hmdp.entity.Shop;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -20,96 +26,617 @@ import static com.hmdp.utils.RedisConstants.*;
 @Slf4j
 @Component
 public class CacheClient {
+    /**
+     * 空值缓存
+     */
+    private static final byte[] NULL_VALUE = new byte[0];
+
     private final StringRedisTemplate stringRedisTemplate;
-    public CacheClient(StringRedisTemplate stringRedisTemplate){
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final CacheBloomFilter bloomFilter;
+    private final CacheProperties cacheProperties;
+    private final HotKeyDetector hotKeyDetector;
+    private final CacheMetrics cacheMetrics;
+    private final CacheRebuildExecutor rebuildExecutor;
+    /**
+     * 写入使用的编解码器
+     */
+    private final CacheCodec writeCodec;
+    /**
+     * 读取时按顺序识别格式，JSON兜底，保证滚动升级期间旧数据可读
+     */
+    private final List<CacheCodec> readCodecs;
+    /**
+     * 缓存未命中时按key合并数据库查询
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+    /**
+     * 一级缓存，保存Redis中的原始值，未开启时为null
+     */
+    private final Cache<String, byte[]> localCache;
+    /**
+     * 热点key的本地副本，过期时间很短，热点降级时清除
+     */
+    private final Cache<String, byte[]> hotReplica;
+    /**
+     * 当前节点标识，用于忽略自己发出的失效消息
+     */
+    private final String nodeId = UUID.randomUUID().toString(true);
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate,
+                       RedisTemplate<String, byte[]> cacheRedisTemplate,
+                       RedisMessageListenerContainer listenerContainer,
+                       CacheBloomFilter bloomFilter,
+                       HotKeyDetector hotKeyDetector,
+                       CacheMetrics cacheMetrics,
+                       CacheRebuildExecutor rebuildExecutor,
+                       CacheProperties cacheProperties){
         this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheRedisTemplate = cacheRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.bloomFilter = bloomFilter;
+        this.cacheProperties = cacheProperties;
+        this.hotKeyDetector = hotKeyDetector;
+        this.cacheMetrics = cacheMetrics;
+        this.rebuildExecutor = rebuildExecutor;
+        CacheCodec binaryCodec = new BinaryCacheCodec();
+        CacheCodec jsonCodec = new JsonCacheCodec();
+        this.writeCodec = cacheProperties.getCodec() == CacheProperties.Codec.BINARY ? binaryCodec : jsonCodec;
+        this.readCodecs = Arrays.asList(binaryCodec, jsonCodec);
+        CacheProperties.Local local = cacheProperties.getLocal();
+        this.localCache = local.isEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(local.getMaximumSize())
+                        .expireAfterWrite(local.getExpireAfterWrite().toMillis(), TimeUnit.MILLISECONDS)
+                        .build()
+                : null;
+        CacheProperties.HotKey hotKey = cacheProperties.getHotKey();
+        this.hotReplica = hotKey.isEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(hotKey.getMaxHotKeys())
+                        .expireAfterWrite(hotKey.getReplicaTtl().toMillis(), TimeUnit.MILLISECONDS)
+                        .build()
+                : null;
     }
+
+    @PostConstruct
+    private void init() {
+        if (localCache != null || hotReplica != null) {
+            listenerContainer.addMessageListener(this::onInvalidateMessage, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+        }
+        if (hotReplica != null) {
+            hotKeyDetector.addDemoteListener(hotReplica::invalidate);
+        }
+        cacheMetrics.gauge("hmdp.cache.singleflight.inflight", "正在合并加载的key数量",
+                singleFlight, SingleFlight::inflight);
+    }
+
     public void set(String key, Object value, Long time, TimeUnit unit){
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        write(key, writeCodec.encode(value), time, unit);
     }
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit){
-        //设置逻辑
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
-        //写入redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData), time, unit);
+        setWithLogicalExpire(key, value, time, unit, 0);
+    }
+
+    /**
+     * @param delta 本次重建耗时(毫秒)，XFetch 据此决定提前刷新的概率
+     */
+    private void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, int delta){
+        //设置逻辑过期时间
+        long expireAt = System.currentTimeMillis() + unit.toMillis(time);
+        //写入redis，实际过期时间比逻辑过期时间长，保证过期后仍有旧数据可返回
+        write(key, writeCodec.encode(value, expireAt, delta), logicalPhysicalMillis(time, unit), TimeUnit.MILLISECONDS);
     }
+
+    /**
+     * 通过pipeline批量写入逻辑过期数据，用于缓存预热
+     */
+    public <ID,R> void setBatchWithLogicalExpire(String keyPrefix, Map<ID,R> values, Long time, TimeUnit unit){
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        long expireAt = System.currentTimeMillis() + unit.toMillis(time);
+        Map<String, byte[]> toCache = new HashMap<>(values.size() * 2);
+        values.forEach((id, value) -> toCache.put(keyPrefix + id, writeCodec.encode(value, expireAt)));
+        writeBatch(toCache, logicalPhysicalMillis(time, unit));
+    }
+
+    /**
+     * 删除缓存，并通知所有节点清除一级缓存
+     */
+    public void delete(String key){
+        stringRedisTemplate.delete(key);
+        evictLocal(key);
+        publishInvalidate(key);
+    }
+
     public <ID,R> R queryWithPassThough(String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFunction,Long time, TimeUnit unit){
+        //布隆过滤器判断id不存在，直接返回
+        if(!bloomFilter.mightContain(keyPrefix, id)){
+            cacheMetrics.request(keyPrefix, CacheMetrics.BLOOM_REJECT);
+            return null;
+        }
         String key = keyPrefix + id;
         //从Redis查询商铺缓存
-        String JSON = stringRedisTemplate.opsForValue().get(key);
-        if(StrUtil.isNotBlank(JSON)){
-            //存在直接返回
-             return JSONUtil.toBean(JSON,type);
-        }
-        //判断命中值是否为空
-        if(JSON != null){
-            //返回错误信息
+        byte[] value = get(key);
+        recordLookup(keyPrefix, value);
+        if(value != null){
+            //存在直接返回，空值说明数据不存在
+            return decode(value, type);
+        }
+        //未命中，同一节点内的并发请求合并为一次加载
+        return loadShared(keyPrefix, id, type, dbFunction, time, unit, false);
+    }
+
+    /**
+     * 批量查询：一次MGET查询缓存，未命中的id一次性查询数据库并通过pipeline回写
+     *
+     * @param dbFunction 根据未命中的id批量查询数据库，返回 id -> 数据
+     * @return 与ids顺序一致的结果，不存在的数据对应位置为null
+     */
+    public <ID,R> List<R> queryBatchWithPassThrough(String keyPrefix, Collection<ID> ids, Class<R> type,
+                                                     Function<Collection<ID>, Map<ID,R>> dbFunction, Long time, TimeUnit unit){
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<ID, R> found = new HashMap<>(ids.size() * 2);
+        //去重，并用布隆过滤器过滤掉不存在的id
+        List<ID> candidates = new ArrayList<>(ids.size());
+        for (ID id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            if (bloomFilter.mightContain(keyPrefix, id)) {
+                candidates.add(id);
+            } else {
+                cacheMetrics.request(keyPrefix, CacheMetrics.BLOOM_REJECT);
+            }
+        }
+        //先查一级缓存
+        List<ID> remoteIds = new ArrayList<>(candidates.size());
+        for (ID id : candidates) {
+            byte[] value = localCache == null ? null : localCache.getIfPresent(keyPrefix + id);
+            if (value == null) {
+                remoteIds.add(id);
+                continue;
+            }
+            cacheMetrics.localHit(keyPrefix, "l1");
+            recordLookup(keyPrefix, value);
+            if (value.length > 0) {
+                found.put(id, decode(value, type));
+            }
+        }
+        //一次MGET查询Redis
+        List<ID> missIds = new ArrayList<>();
+        if (!remoteIds.isEmpty()) {
+            List<String> keys = new ArrayList<>(remoteIds.size());
+            for (ID id : remoteIds) {
+                keys.add(keyPrefix + id);
+            }
+            List<byte[]> values = cacheRedisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; i < remoteIds.size(); i++) {
+                byte[] value = values == null ? null : values.get(i);
+                recordLookup(keyPrefix, value);
+                if (value == null) {
+                    missIds.add(remoteIds.get(i));
+                    continue;
+                }
+                if (localCache != null) {
+                    localCache.put(keys.get(i), value);
+                }
+                if (value.length > 0) {
+                    found.put(remoteIds.get(i), decode(value, type));
+                }
+            }
+        }
+        //未命中的一次性查询数据库，并用pipeline回写缓存
+        if (!missIds.isEmpty()) {
+            Map<ID, R> loaded = cacheMetrics.rebuildTimer(keyPrefix, "sync").record(() -> dbFunction.apply(missIds));
+            Map<String, byte[]> toCache = new LinkedHashMap<>(missIds.size() * 2);
+            for (ID id : missIds) {
+                R r = loaded == null ? null : loaded.get(id);
+                if (r != null) {
+                    found.put(id, r);
+                }
+                toCache.put(keyPrefix + id, r == null ? NULL_VALUE : writeCodec.encode(r));
+            }
+            writeBatch(toCache, unit.toMillis(time));
+        }
+        //按原顺序组装结果
+        List<R> result = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            result.add(found.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * 使用pipeline批量写入缓存，空值使用 CACHE_NULL_TTL；按毫秒写入，不足1秒的过期时间不会被截断为0
+     */
+    private void writeBatch(Map<String, byte[]> values, long millis) {
+        long nullMillis = TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL);
+        byte[] channel = CACHE_INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                connection.pSetEx(rawKey, value.length == 0 ? nullMillis : millis, value);
+                if (needsBroadcast(key)) {
+                    connection.publish(channel, (nodeId + "|" + key).getBytes(StandardCharsets.UTF_8));
+                }
+            });
             return null;
+        });
+        if (localCache != null) {
+            localCache.putAll(values);
         }
-        R r = dbFunction.apply(id);
+        if (hotReplica != null) {
+            values.forEach((key, value) -> {
+                if (hotKeyDetector.isHot(key)) {
+                    hotReplica.put(key, value);
+                }
+            });
+        }
+    }
+
+    /**
+     * 同一节点内合并加载，等待超时后先查Redis，仍未命中再直接查询数据库兜底
+     */
+    private <ID,R> R loadShared(String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFunction,Long time, TimeUnit unit,
+                                boolean logical){
+        String key = keyPrefix + id;
+        return singleFlight.execute(key,
+                () -> loadWithMutex(keyPrefix, id, type, dbFunction, time, unit, logical),
+                cacheProperties.getLoadTimeout().toMillis(), TimeUnit.MILLISECONDS,
+                () -> {
+                    CacheEntry<R> cached = read(cacheRedisTemplate.opsForValue().get(key), type, logical);
+                    if (cached != null) {
+                        return cached.getData();
+                    }
+                    return loadAndCache(key, id, dbFunction, time, unit, logical);
+                });
+    }
+
+    /**
+     * 加载数据并写入缓存，通过Redis互斥锁保证多个节点只有一个查询数据库
+     */
+    private <ID,R> R loadWithMutex(String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFunction,Long time, TimeUnit unit,
+                                   boolean logical){
+        String key = keyPrefix + id;
+        String lockKey = lockKey(keyPrefix, id);
+        long deadline = System.currentTimeMillis() + cacheProperties.getMutexWait().toMillis();
+        while (!tryLock(keyPrefix, lockKey)) {
+            if (System.currentTimeMillis() >= deadline) {
+                // 等待其他节点重建超时，直接查询数据库兜底
+                return loadAndCache(key, id, dbFunction, time, unit, logical);
+            }
+            try {
+                Thread.sleep(MUTEX_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            //其他节点可能已经写入缓存
+            CacheEntry<R> cached = read(cacheRedisTemplate.opsForValue().get(key), type, logical);
+            if (cached != null) {
+                return cached.getData();
+            }
+        }
+        try {
+            //获取锁后再次检查缓存
+            CacheEntry<R> cached = read(cacheRedisTemplate.opsForValue().get(key), type, logical);
+            if (cached != null) {
+                return cached.getData();
+            }
+            return loadAndCache(key, id, dbFunction, time, unit, logical);
+        } finally {
+            unlock(lockKey);
+        }
+    }
+
+    private <ID,R> R loadAndCache(String key, ID id, Function<ID,R> dbFunction, Long time, TimeUnit unit, boolean logical){
+        long start = System.currentTimeMillis();
+        R r = cacheMetrics.rebuildTimer(CacheMetrics.prefixOf(key), "sync").record(() -> dbFunction.apply(id));
         if(r == null){
-            stringRedisTemplate.opsForValue().set(key,"",CACHE_NULL_TTL, TimeUnit.MINUTES);
+            write(key, NULL_VALUE, CACHE_NULL_TTL, TimeUnit.MINUTES);
             return null;
         }
         //存在写入缓存
-        this.set(key,r,time,unit);
+        if (logical) {
+            this.setWithLogicalExpire(key, r, time, unit, (int) (System.currentTimeMillis() - start));
+        } else {
+            this.set(key, r, time, unit);
+        }
         return r;
     }
+
+    /**
+     * 逻辑过期数据在Redis中的实际保留时间
+     */
+    private long logicalPhysicalMillis(Long time, TimeUnit unit) {
+        return unit.toMillis(time) + cacheProperties.getLogicalGrace().toMillis();
+    }
+
+    /**
+     * 缓存重建锁的key，商铺沿用 lock:shop:{id}
+     */
+    private String lockKey(String keyPrefix, Object id) {
+        if (CACHE_SHOP_KEY.equals(keyPrefix)) {
+            return LOCK_SHOP_KEY + id;
+        }
+        return LOCK_CACHE_KEY + keyPrefix + id;
+    }
     //锁
     public boolean  tryLock(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+        return tryLock(CacheMetrics.prefixOf(key), key);
+    }
+
+    /**
+     * 加锁，指标按缓存key前缀统计(锁key前缀为 lock:shop: 等)
+     */
+    private boolean tryLock(String keyPrefix, String lockKey){
+        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, "1", 10, TimeUnit.SECONDS);
+        boolean acquired = BooleanUtil.isTrue(flag);
+        cacheMetrics.lock(keyPrefix, acquired);
+        return acquired;
     }
     //开锁
     public void unlock(String key){
         stringRedisTemplate.delete(key);
     }
-    //线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    /**
+     * 等待其他节点重建缓存时的轮询间隔(毫秒)
+     */
+    private static final long MUTEX_RETRY_INTERVAL = 50;
+    /**
+     * 查询逻辑过期数据，刷新方式由 hmdp.cache.refresh.modes 按前缀选择
+     */
     public <R,ID> R queryWithLogicalExpire(String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFunction,Long time, TimeUnit unit) {
+        if (cacheProperties.getRefresh().getModes().get(keyPrefix) == CacheProperties.RefreshMode.XFETCH) {
+            return queryWithEarlyRefresh(keyPrefix, id, type, dbFunction, time, unit);
+        }
+        if(!bloomFilter.mightContain(keyPrefix, id)){
+            cacheMetrics.request(keyPrefix, CacheMetrics.BLOOM_REJECT);
+            return null;
+        }
         String key = keyPrefix + id;
-        String shopJSON = stringRedisTemplate.opsForValue().get(key);
-        // 1.判断是否存在
-        if(StrUtil.isBlank(shopJSON)){
+        byte[] value = get(key);
+        // 1.判断是否存在，空值说明数据不存在
+        if(value != null && value.length == 0){
+            cacheMetrics.request(keyPrefix, CacheMetrics.NULL_HIT);
             return null;
         }
-        // 2.命中，将JSON反序列化为对象
-        RedisData redisDate = JSONUtil.toBean(shopJSON, RedisData.class);
-        R r = JSONUtil.toBean(JSONUtil.toJsonStr(redisDate.getData()), type);
-        LocalDateTime expireTime = redisDate.getExpireTime();
-        
-        // 3.判断是否过期（注意判空和逻辑）
-        if(expireTime != null && LocalDateTime.now().isBefore(expireTime)){
+        // 2.命中，一次解码得到数据和逻辑过期时间
+        CacheEntry<R> entry = value == null ? null : codecOf(value).decodeWithExpire(value, type);
+        if(!isLogical(entry)){
+            // 未预热、已被淘汰或不是逻辑过期格式，同步加载一次并写入逻辑过期格式
+            cacheMetrics.request(keyPrefix, CacheMetrics.MISS);
+            return loadShared(keyPrefix, id, type, dbFunction, time, unit, true);
+        }
+        R r = entry.getData();
+
+        // 3.判断是否过期
+        if(!entry.isExpired(System.currentTimeMillis())){
             // 未过期，直接返回
+            cacheMetrics.request(keyPrefix, CacheMetrics.HIT);
             return r;
         }
-        
+        cacheMetrics.request(keyPrefix, CacheMetrics.STALE);
+
         // 4.已过期，需要缓存重建
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        try {
-            if(isLock){
-                // 获取锁成功，开启独立线程实现缓存重建
-                CACHE_REBUILD_EXECUTOR.submit(()->{
-                    try {
-                        // 查询数据库
-                        R r1 = dbFunction.apply(id);
-                        // 写入Redis
-                        this.setWithLogicalExpire(key,r1,time,unit);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    } finally {
-                        unlock(lockKey);
-                    }
-                });
+        String lockKey = lockKey(keyPrefix, id);
+        boolean isLock = tryLock(keyPrefix, lockKey);
+        if(isLock){
+            // 获取锁成功，开启独立线程实现缓存重建
+            CacheRebuildExecutor.Submission submission = rebuildExecutor.submit(key, () -> {
+                try {
+                    // 查询数据库并写入Redis
+                    rebuildLogical(keyPrefix, key, id, dbFunction, time, unit);
+                } finally {
+                    unlock(lockKey);
+                }
+            });
+            if (submission == CacheRebuildExecutor.Submission.REJECTED) {
+                // 队列已满，释放锁让后续请求重试
+                unlock(lockKey);
+            } else if (submission == CacheRebuildExecutor.Submission.DEDUPLICATED) {
+                // 本节点已有该key的重建在排队或执行，保留锁等待自动过期，避免其他节点重复重建
+                log.debug("缓存重建已在进行中, key={}", key);
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
-        
+
         // 返回过期的数据
         return r;
     }
-}
\ No newline at end of file
+
+    /**
+     * XFetch 提前刷新：每次读取按概率决定是否提前重建，
+     * 刷新时间点随重建耗时和随机数分散开，不需要分布式锁
+     */
+    public <R,ID> R queryWithEarlyRefresh(String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFunction,Long time, TimeUnit unit) {
+        if(!bloomFilter.mightContain(keyPrefix, id)){
+            cacheMetrics.request(keyPrefix, CacheMetrics.BLOOM_REJECT);
+            return null;
+        }
+        String key = keyPrefix + id;
+        byte[] value = get(key);
+        if(value != null && value.length == 0){
+            cacheMetrics.request(keyPrefix, CacheMetrics.NULL_HIT);
+            return null;
+        }
+        CacheEntry<R> entry = value == null ? null : codecOf(value).decodeWithExpire(value, type);
+        if(!isLogical(entry)){
+            cacheMetrics.request(keyPrefix, CacheMetrics.MISS);
+            return loadShared(keyPrefix, id, type, dbFunction, time, unit, true);
+        }
+        long now = System.currentTimeMillis();
+        boolean expired = entry.isExpired(now);
+        cacheMetrics.request(keyPrefix, expired ? CacheMetrics.STALE : CacheMetrics.HIT);
+        if ((expired || shouldRefreshEarly(entry, now))
+                && rebuildExecutor.submit(key, () -> rebuildLogical(keyPrefix, key, id, dbFunction, time, unit))
+                        == CacheRebuildExecutor.Submission.ACCEPTED) {
+            cacheMetrics.earlyRefresh(keyPrefix);
+        }
+        return entry.getData();
+    }
+
+    /**
+     * XFetch 判定: now - delta * beta * ln(rand) >= expireAt
+     */
+    private boolean shouldRefreshEarly(CacheEntry<?> entry, long now) {
+        double rand = ThreadLocalRandom.current().nextDouble();
+        return now - entry.getDelta() * cacheProperties.getRefresh().getBeta() * Math.log(rand) >= entry.getExpireAt();
+    }
+
+    /**
+     * 查询数据库并写入逻辑过期数据，同时记录重建耗时
+     */
+    private <R,ID> void rebuildLogical(String keyPrefix, String key, ID id, Function<ID,R> dbFunction, Long time, TimeUnit unit) {
+        long start = System.currentTimeMillis();
+        R r = cacheMetrics.rebuildTimer(keyPrefix, "async").record(() -> dbFunction.apply(id));
+        if (r == null) {
+            write(key, NULL_VALUE, CACHE_NULL_TTL, TimeUnit.MINUTES);
+            return;
+        }
+        setWithLogicalExpire(key, r, time, unit, (int) (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * 读取缓存：一级缓存 -> 热点副本 -> Redis，并按需回填
+     */
+    private byte[] get(String key) {
+        byte[] value;
+        if (localCache != null && (value = localCache.getIfPresent(key)) != null) {
+            cacheMetrics.localHit(CacheMetrics.prefixOf(key), "l1");
+            return value;
+        }
+        boolean hot = hotKeyDetector.record(key);
+        if (hot && hotReplica != null && (value = hotReplica.getIfPresent(key)) != null) {
+            hotKeyDetector.recordReplicaHit(key);
+            cacheMetrics.localHit(CacheMetrics.prefixOf(key), "replica");
+            return value;
+        }
+        value = cacheRedisTemplate.opsForValue().get(key);
+        if (value != null) {
+            if (localCache != null) {
+                localCache.put(key, value);
+            }
+            if (hot && hotReplica != null) {
+                hotReplica.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 写入Redis，同时更新本地副本并让其他节点的副本失效
+     */
+    private void write(String key, byte[] value, Long time, TimeUnit unit) {
+        cacheRedisTemplate.opsForValue().set(key, value, time, unit);
+        if (localCache != null) {
+            localCache.put(key, value);
+        }
+        if (hotReplica != null && hotKeyDetector.isHot(key)) {
+            hotReplica.put(key, value);
+        }
+        if (needsBroadcast(key)) {
+            publishInvalidate(key);
+        }
+    }
+
+    /**
+     * 是否存在需要跨节点失效的本地副本
+     */
+    private boolean isBroadcastEnabled() {
+        return localCache != null || hotReplica != null;
+    }
+
+    /**
+     * 写入时是否需要广播失效：一级缓存任何节点都可能持有该key，需要广播；
+     * 只开启热点副本时，只广播本节点判定为热点的key，其他节点的副本最多保留 replicaTtl
+     */
+    private boolean needsBroadcast(String key) {
+        return localCache != null || (hotReplica != null && hotKeyDetector.isHot(key));
+    }
+
+    private void evictLocal(String key) {
+        if (localCache != null) {
+            localCache.invalidate(key);
+        }
+        if (hotReplica != null) {
+            hotReplica.invalidate(key);
+        }
+    }
+
+    /**
+     * 记录普通缓存的查询结果
+     */
+    private void recordLookup(String keyPrefix, byte[] value) {
+        cacheMetrics.request(keyPrefix, value == null ? CacheMetrics.MISS
+                : value.length == 0 ? CacheMetrics.NULL_HIT : CacheMetrics.HIT);
+    }
+
+    /**
+     * 重新检查Redis中的缓存，按写入格式解码
+     *
+     * @return 未命中时返回null；空值缓存返回data为null的结果；
+     * 逻辑过期查询遇到不是逻辑过期格式的旧数据(如普通缓存或旧节点写入的值)按未命中处理，由调用方重新加载覆盖
+     */
+    private <R> CacheEntry<R> read(byte[] value, Class<R> type, boolean logical) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length == 0) {
+            return new CacheEntry<>(null, 0);
+        }
+        if (!logical) {
+            return new CacheEntry<>(decode(value, type), 0);
+        }
+        CacheEntry<R> entry = codecOf(value).decodeWithExpire(value, type);
+        return isLogical(entry) ? entry : null;
+    }
+
+    /**
+     * 是否为带数据和逻辑过期时间的缓存
+     */
+    private static boolean isLogical(CacheEntry<?> entry) {
+        return entry != null && entry.getData() != null && entry.getExpireAt() > 0;
+    }
+
+    /**
+     * 解码普通缓存值，空值返回null
+     */
+    private <R> R decode(byte[] value, Class<R> type) {
+        return value.length == 0 ? null : codecOf(value).decode(value, type);
+    }
+
+    private CacheCodec codecOf(byte[] value) {
+        for (CacheCodec codec : readCodecs) {
+            if (codec.supports(value)) {
+                return codec;
+            }
+        }
+        return writeCodec;
+    }
+
+    private void publishInvalidate(String key) {
+        if (!isBroadcastEnabled()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, nodeId + "|" + key);
+        } catch (Exception e) {
+            // 广播失败时依赖一级缓存的过期时间兜底
+            log.warn("发布缓存失效消息失败, key={}", key, e);
+        }
+    }
+
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int idx = body.indexOf('|');
+        if (idx < 0 || nodeId.equals(body.substring(0, idx))) {
+            return;
+        }
+        evictLocal(body.substring(idx + 1));
+    }
+}
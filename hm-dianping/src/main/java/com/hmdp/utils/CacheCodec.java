@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存值编解码器
+ * 空字节数组表示空值缓存，由调用方处理，不会传给编解码器
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码普通缓存值
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 编码带逻辑过期时间的缓存值
+     *
+     * @param expireAt 逻辑过期时间(毫秒时间戳)
+     */
+    default byte[] encode(Object value, long expireAt) {
+        return encode(value, expireAt, 0);
+    }
+
+    /**
+     * 编码带逻辑过期时间和重建耗时的缓存值
+     *
+     * @param expireAt 逻辑过期时间(毫秒时间戳)
+     * @param delta    上次重建耗时(毫秒)，用于提前刷新
+     */
+    byte[] encode(Object value, long expireAt, int delta);
+
+    /**
+     * 是否能识别该格式
+     */
+    boolean supports(byte[] bytes);
+
+    /**
+     * 解码普通缓存值
+     */
+    <R> R decode(byte[] bytes, Class<R> type);
+
+    /**
+     * 解码带逻辑过期时间的缓存值
+     */
+    <R> CacheEntry<R> decodeWithExpire(byte[] bytes, Class<R> type);
+
+    /**
+     * 只读取逻辑过期时间，不存在时返回0
+     */
+    long expireAt(byte[] bytes);
+}
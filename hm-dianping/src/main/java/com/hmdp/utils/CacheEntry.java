@@ -0,0 +1,29 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 解码后的逻辑过期缓存
+ */
+@Data
+@AllArgsConstructor
+public class CacheEntry<R> {
+    private R data;
+    /**
+     * 逻辑过期时间(毫秒时间戳)，0表示没有过期时间
+     */
+    private long expireAt;
+    /**
+     * 上次重建耗时(毫秒)，0表示未记录
+     */
+    private int delta;
+
+    public CacheEntry(R data, long expireAt) {
+        this(data, expireAt, 0);
+    }
+
+    public boolean isExpired(long now) {
+        return expireAt <= now;
+    }
+}
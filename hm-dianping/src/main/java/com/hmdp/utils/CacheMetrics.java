@@ -0,0 +1,97 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 缓存指标，按key前缀统计，通过 /actuator/metrics 和 /actuator/prometheus 查看
+ */
+@Component
+public class CacheMetrics {
+    public static final String HIT = "hit";
+    public static final String NULL_HIT = "null_hit";
+    public static final String MISS = "miss";
+    public static final String STALE = "stale";
+    public static final String BLOOM_REJECT = "bloom_reject";
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 记录一次缓存查询结果：hit/null_hit/miss/stale/bloom_reject
+     */
+    public void request(String prefix, String result) {
+        counter("hmdp.cache.requests", prefix, "result", result).increment();
+    }
+
+    /**
+     * 记录一次本地缓存命中，tier 为 l1 或 replica
+     */
+    public void localHit(String prefix, String tier) {
+        counter("hmdp.cache.local.hits", prefix, "tier", tier).increment();
+    }
+
+    /**
+     * 记录一次重建锁竞争结果
+     */
+    public void lock(String prefix, boolean acquired) {
+        counter("hmdp.cache.lock", prefix, "result", acquired ? "acquired" : "contended").increment();
+    }
+
+    /**
+     * 记录一次重建任务提交结果：accepted/deduplicated/rejected
+     */
+    public void rebuildSubmit(String prefix, String result) {
+        counter("hmdp.cache.rebuild.submit", prefix, "result", result).increment();
+    }
+
+    /**
+     * 记录一次 XFetch 提前刷新
+     */
+    public void earlyRefresh(String prefix) {
+        counter("hmdp.cache.early.refresh", prefix, "mode", "xfetch").increment();
+    }
+
+    /**
+     * 缓存重建耗时，mode 为 sync(未命中同步加载) 或 async(逻辑过期异步重建)
+     */
+    public Timer rebuildTimer(String prefix, String mode) {
+        return timers.computeIfAbsent("hmdp.cache.rebuild|" + prefix + "|" + mode, k -> Timer.builder("hmdp.cache.rebuild")
+                .description("缓存重建耗时")
+                .tag("prefix", prefix)
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public <T> void gauge(String name, String description, T obj, ToDoubleFunction<T> f) {
+        Gauge.builder(name, obj, f).description(description).register(registry);
+    }
+
+    /**
+     * 从key中截取前缀，如 cache:shop:1 -> cache:shop:
+     */
+    public static String prefixOf(String key) {
+        int idx = key.lastIndexOf(':');
+        return idx < 0 ? key : key.substring(0, idx + 1);
+    }
+
+    private Counter counter(String name, String prefix, String tagKey, String tagValue) {
+        return counters.computeIfAbsent(name + "|" + prefix + "|" + tagValue, k -> Counter.builder(name)
+                .tag("prefix", prefix)
+                .tag(tagKey, tagValue)
+                .register(registry));
+    }
+}
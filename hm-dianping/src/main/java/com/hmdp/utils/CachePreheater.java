@@ -0,0 +1,120 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 店铺缓存预热：启动时流式读取全部店铺写入逻辑过期缓存，之后定时刷新热点店铺，
+ * 避免冷启动或Redis清空后大量请求同时打到数据库
+ */
+@Slf4j
+@Component
+public class CachePreheater {
+    @Resource
+    private ShopMapper shopMapper;
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private CacheProperties cacheProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preheatAll() {
+        if (!cacheProperties.getPreheat().isEnabled()) {
+            return;
+        }
+        // 多个节点同时启动时只需要一个节点预热
+        String lockKey = LOCK_PREHEAT_KEY + "shop";
+        if (!tryLock(lockKey)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int batchSize = cacheProperties.getPreheat().getBatchSize();
+            Map<Long, Shop> batch = new HashMap<>(batchSize * 2);
+            int[] total = {0};
+            shopMapper.scanAll(context -> {
+                Shop shop = context.getResultObject();
+                batch.put(shop.getId(), shop);
+                if (batch.size() >= batchSize) {
+                    total[0] += flush(batch);
+                }
+            });
+            total[0] += flush(batch);
+            log.info("店铺缓存预热完成, 数量={}, 耗时{}ms", total[0], System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 预热失败不影响启动，未命中时会同步加载
+            log.error("店铺缓存预热失败", e);
+        } finally {
+            stringRedisTemplate.delete(lockKey);
+        }
+    }
+
+    /**
+     * 定时刷新热点店铺：配置的固定店铺 + 探测到的热点店铺
+     */
+    @Scheduled(initialDelayString = "#{@cacheProperties.preheat.interval.toMillis()}",
+            fixedDelayString = "#{@cacheProperties.preheat.interval.toMillis()}")
+    public void preheatHot() {
+        if (!cacheProperties.getPreheat().isEnabled()) {
+            return;
+        }
+        Set<Long> ids = new LinkedHashSet<>(cacheProperties.getPreheat().getHotShopIds());
+        for (Map<String, Object> hotKey : hotKeyDetector.hotKeys()) {
+            String key = (String) hotKey.get("key");
+            String id = StrUtil.removePrefix(key, CACHE_SHOP_KEY);
+            if (key.startsWith(CACHE_SHOP_KEY) && StrUtil.isNumeric(id)) {
+                ids.add(Long.valueOf(id));
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        String lockKey = LOCK_PREHEAT_KEY + "shop:hot";
+        if (!tryLock(lockKey)) {
+            return;
+        }
+        try {
+            List<Shop> shops = shopMapper.selectBatchIds(ids);
+            Map<Long, Shop> batch = new HashMap<>(shops.size() * 2);
+            for (Shop shop : shops) {
+                batch.put(shop.getId(), shop);
+            }
+            log.debug("热点店铺缓存刷新, 数量={}", flush(batch));
+        } catch (Exception e) {
+            log.error("热点店铺缓存刷新失败", e);
+        } finally {
+            stringRedisTemplate.delete(lockKey);
+        }
+    }
+
+    private int flush(Map<Long, Shop> batch) {
+        int size = batch.size();
+        cacheClient.setBatchWithLogicalExpire(CACHE_SHOP_KEY, batch, CACHE_SHOP_LOGICAL_TTL, TimeUnit.MINUTES);
+        batch.clear();
+        return size;
+    }
+
+    private boolean tryLock(String key) {
+        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", LOCK_PREHEAT_TTL, TimeUnit.SECONDS);
+        return BooleanUtil.isTrue(flag);
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存异步重建线程池：有界队列，同一个key排队或执行中时不重复提交，
+ * 队列满时拒绝提交，调用方继续返回旧数据
+ */
+@Slf4j
+@Component
+public class CacheRebuildExecutor {
+
+    public enum Submission {
+        /**
+         * 已提交
+         */
+        ACCEPTED,
+        /**
+         * 同一个key已在排队或执行中
+         */
+        DEDUPLICATED,
+        /**
+         * 队列已满被拒绝
+         */
+        REJECTED
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final CacheProperties.Rebuild config;
+    private final CacheMetrics cacheMetrics;
+    /**
+     * 排队或执行中的key
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public CacheRebuildExecutor(CacheProperties cacheProperties, CacheMetrics cacheMetrics) {
+        this.config = cacheProperties.getRebuild();
+        this.cacheMetrics = cacheMetrics;
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new NamedThreadFactory("cache-rebuild-", false),
+                new ThreadPoolExecutor.AbortPolicy());
+        cacheMetrics.gauge("hmdp.cache.rebuild.queue", "缓存重建排队任务数", executor, e -> e.getQueue().size());
+        cacheMetrics.gauge("hmdp.cache.rebuild.active", "正在执行的缓存重建任务数", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    /**
+     * 提交重建任务
+     *
+     * @return 提交结果，key已在排队或执行中时不重复提交
+     */
+    public Submission submit(String key, Runnable task) {
+        String prefix = CacheMetrics.prefixOf(key);
+        if (!pending.add(key)) {
+            cacheMetrics.rebuildSubmit(prefix, "deduplicated");
+            return Submission.DEDUPLICATED;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("缓存重建失败, key={}", key, e);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            cacheMetrics.rebuildSubmit(prefix, "rejected");
+            log.warn("缓存重建队列已满, 继续返回旧数据, key={}", key);
+            return Submission.REJECTED;
+        }
+        cacheMetrics.rebuildSubmit(prefix, "accepted");
+        return Submission.ACCEPTED;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(config.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("缓存重建线程池未能在{}内结束, 丢弃{}个排队任务",
+                    config.getShutdownTimeout(), executor.shutdownNow().size());
+        }
+    }
+}
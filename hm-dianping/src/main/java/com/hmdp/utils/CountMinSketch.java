@@ -0,0 +1,55 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min Sketch，用固定内存估算元素出现次数，结果只会偏大不会偏小
+ */
+public class CountMinSketch {
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F, 0x165667B1, 0xD3A2646C};
+
+    private final int depth;
+    private final int width;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param depth 哈希函数个数，最多6个
+     * @param width 每行计数器个数，取2的幂
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || depth > SEEDS.length || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("depth必须在1~" + SEEDS.length + "之间，width必须是2的幂");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicIntegerArray(depth * width);
+    }
+
+    public void add(String key, int count) {
+        int hash = key.hashCode();
+        for (int i = 0; i < depth; i++) {
+            counters.addAndGet(i * width + index(hash, i), count);
+        }
+    }
+
+    public int estimate(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters.get(i * width + index(hash, i)));
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return h & (width - 1);
+    }
+}
@@ -0,0 +1,154 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 热点key探测：按采样率记录访问，用滑动窗口内的 Count-Min Sketch 估算访问量，
+ * 超过阈值的key晋升为热点，回落到阈值一半以下时降级
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+    private final CacheProperties.HotKey config;
+    /**
+     * 滑动窗口，每个槽位对应 window / windowSlots 的时间
+     */
+    private final CountMinSketch[] slots;
+    private final long slotMillis;
+    private volatile int current;
+    private final AtomicLong slotStart = new AtomicLong(System.currentTimeMillis());
+    /**
+     * 热点key -> 本地副本命中次数
+     */
+    private final Map<String, LongAdder> hotKeys = new ConcurrentHashMap<>();
+    /**
+     * 热点降级回调
+     */
+    private final List<Consumer<String>> demoteListeners = new ArrayList<>();
+
+    public HotKeyDetector(CacheProperties cacheProperties) {
+        this.config = cacheProperties.getHotKey();
+        int slotCount = Math.max(1, config.getWindowSlots());
+        this.slots = new CountMinSketch[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new CountMinSketch(config.getDepth(), config.getWidth());
+        }
+        this.slotMillis = Math.max(1, config.getWindow().toMillis() / slotCount);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 记录一次访问，返回该key当前是否为热点
+     */
+    public boolean record(String key) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+        rotateIfNeeded();
+        boolean hot = hotKeys.containsKey(key);
+        // 按采样率记录，每次采样代表 1/sampleRate 次访问
+        if (ThreadLocalRandom.current().nextDouble() >= config.getSampleRate()) {
+            return hot;
+        }
+        slots[current].add(key, 1);
+        if (!hot && estimate(key) >= config.getThreshold() && hotKeys.size() < config.getMaxHotKeys()) {
+            hotKeys.putIfAbsent(key, new LongAdder());
+            log.info("key {} 晋升为热点", key);
+            return true;
+        }
+        return hot;
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 记录一次本地副本命中
+     */
+    public void recordReplicaHit(String key) {
+        LongAdder hits = hotKeys.get(key);
+        if (hits != null) {
+            hits.increment();
+        }
+    }
+
+    /**
+     * 估算窗口内的访问次数
+     */
+    public long estimate(String key) {
+        long sampled = 0;
+        for (CountMinSketch slot : slots) {
+            sampled += slot.estimate(key);
+        }
+        return (long) (sampled / config.getSampleRate());
+    }
+
+    public void addDemoteListener(Consumer<String> listener) {
+        demoteListeners.add(listener);
+    }
+
+    /**
+     * 当前热点key及其窗口访问量、副本命中次数
+     */
+    public List<Map<String, Object>> hotKeys() {
+        rotateIfNeeded();
+        List<Map<String, Object>> result = new ArrayList<>(hotKeys.size());
+        hotKeys.forEach((key, hits) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", key);
+            item.put("estimate", estimate(key));
+            item.put("replicaHits", hits.sum());
+            result.add(item);
+        });
+        result.sort((a, b) -> Long.compare((Long) b.get("estimate"), (Long) a.get("estimate")));
+        return result;
+    }
+
+    /**
+     * 时间到达下一个槽位时清空最旧的槽位，并检查热点是否需要降级
+     */
+    private void rotateIfNeeded() {
+        long start = slotStart.get();
+        long now = System.currentTimeMillis();
+        if (now - start < slotMillis || !slotStart.compareAndSet(start, now)) {
+            return;
+        }
+        // 长时间无访问时可能跨过多个槽位
+        long steps = Math.min(slots.length, (now - start) / slotMillis);
+        int next = current;
+        for (long i = 0; i < steps; i++) {
+            next = (next + 1) % slots.length;
+            slots[next].clear();
+        }
+        current = next;
+        demote();
+    }
+
+    private void demote() {
+        long low = config.getThreshold() / 2;
+        Iterator<String> it = hotKeys.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (estimate(key) < low) {
+                it.remove();
+                log.info("key {} 降级为普通key", key);
+                for (Consumer<String> listener : demoteListeners) {
+                    listener.accept(key);
+                }
+            }
+        }
+    }
+}
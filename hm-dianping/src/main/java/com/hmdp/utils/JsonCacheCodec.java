@@ -0,0 +1,61 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * JSON编解码，兼容 RedisData 格式的历史缓存
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encode(Object value, long expireAt, int delta) {
+        RedisData redisData = new RedisData();
+        redisData.setData(value);
+        redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireAt), ZoneId.systemDefault()));
+        if (delta > 0) {
+            redisData.setDelta(delta);
+        }
+        return encode(redisData);
+    }
+
+    @Override
+    public boolean supports(byte[] bytes) {
+        // 兜底格式，其他编解码器都不识别时使用
+        return true;
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        return JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public <R> CacheEntry<R> decodeWithExpire(byte[] bytes, Class<R> type) {
+        // 只解析一次，data直接由JSONObject转换为目标类型
+        JSONObject json = JSONUtil.parseObj(new String(bytes, StandardCharsets.UTF_8));
+        JSONObject data = json.getJSONObject("data");
+        Integer delta = json.getInt("delta");
+        return new CacheEntry<>(data == null ? null : data.toBean(type), expireAt(json), delta == null ? 0 : delta);
+    }
+
+    @Override
+    public long expireAt(byte[] bytes) {
+        return expireAt(JSONUtil.parseObj(new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    private long expireAt(JSONObject json) {
+        LocalDateTime expireTime = json.get("expireTime", LocalDateTime.class);
+        return expireTime == null ? 0 : expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -10,16 +10,40 @@ public class RedisConstants {
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final Long CACHE_SHOP_LOGICAL_TTL = 20L;
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_PREHEAT_KEY = "lock:preheat:";
+    public static final Long LOCK_PREHEAT_TTL = 60L;
+    public static final String LOCK_RECONCILE_KEY = "lock:reconcile:stock";
+    public static final Long LOCK_RECONCILE_TTL = 300L;
+    public static final String LOCK_CACHE_KEY = "lock:";
     public static final String CACHE_SHOPTYPE_KEY = "cache:shopType:";
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_BLOOM_CHANNEL = "cache:bloom";
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final String CACHE_USER_KEY = "cache:user:";
+    public static final Long CACHE_USER_TTL = 30L;
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_CONF_KEY = "seckill:conf:";
+    public static final String SECKILL_LIMIT_KEY = "seckill:limit:";
+    public static final String SECKILL_ORDER_STREAM = "stream.orders";
+    public static final String SECKILL_ORDER_DLQ = "stream.orders.dlq";
+    public static final String SECKILL_RECONCILE_KEY = "seckill:reconcile";
+    public static final String SECKILL_PENDING_KEY = "seckill:pending:";
+    public static final String SECKILL_PENDING_WRITERS_KEY = "seckill:pending:writers";
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:soldout";
+    public static final String SECKILL_SCHEDULE_CHANNEL = "seckill:schedule";
+    public static final String SECKILL_STATUS_KEY = "seckill:status:";
+    public static final String SECKILL_STATUS_CHANNEL = "seckill:status";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
     public static final String LOCK_ORDER_KEY = "lock:order:";
     public static final String SECKILL_VOUCHER_ORDER = "order";
+    public static final String ID_WORKER_KEY = "id:worker:";
     public static final String FEED_ORDER ="feed:";
 }
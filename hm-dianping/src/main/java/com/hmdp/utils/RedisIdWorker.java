@@ -1,34 +1,221 @@
 package com.hmdp.utils;
 
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.IdProperties;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局id：31位时间戳(秒) + 32位当天序列号
+ * snowflake 模式交给 SnowflakeIdGenerator 在本地生成，低32位为 模式位 + worker id + 序列号；
+ * incr/号段模式的序列号不超过31位，不会与 snowflake 的id重复
+ * 序列号默认每个id执行一次 INCR icr:{prefix}:{date}；号段模式下一次 INCRBY 预留一段，
+ * 本地无锁分配，剩余量低于水位时后台预取下一段。节点重启或跨天时未用完的号段直接丢弃，id不连续但不重复
+ */
+@Slf4j
 @Component
 public class RedisIdWorker {
-    @Resource
-   private StringRedisTemplate stringRedisTemplate;
     //开始时间戳
-    private static final long BEGIN_TIME = 1735689600L;
+    static final long BEGIN_TIME = 1735689600L;
     //序列号位数
     private static final int COUNT_BIT = 32;
+    private static final long SECONDS_PER_DAY = 86400L;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final IdProperties idProperties;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+    /**
+     * 缓存当天的日期字符串，跨天时重新格式化
+     */
+    private volatile Day day = new Day(Long.MIN_VALUE, null);
+    private final Map<String, SegmentAllocator> allocators = new ConcurrentHashMap<>();
+    private final ExecutorService prefetchExecutor = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            new NamedThreadFactory("id-segment-", true));
+
+    public RedisIdWorker(StringRedisTemplate stringRedisTemplate, IdProperties idProperties,
+                         SnowflakeIdGenerator snowflakeIdGenerator) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.idProperties = idProperties;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+    }
+
     public long nextId(String keyPrefix){
+        IdProperties.IdMode mode = idProperties.getModes().get(keyPrefix);
+        if (mode == IdProperties.IdMode.SNOWFLAKE) {
+            return snowflakeIdGenerator.nextId();
+        }
         //1.生成时间戳
-        LocalDateTime localDateTime = LocalDateTime.now();
-        long seconds = localDateTime.toEpochSecond(ZoneOffset.UTC);
+        long seconds = currentSeconds();
         long timestamp = seconds - BEGIN_TIME;
         //2.生成序列号
         // 获取当天日期
-        String date = localDateTime.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
-        //自增长
-        Long count = stringRedisTemplate.opsForValue().increment("icr:" + keyPrefix + ":" + date);
+        String date = date(Math.floorDiv(seconds, SECONDS_PER_DAY));
+        long count;
+        if (mode == IdProperties.IdMode.SEGMENT) {
+            count = allocators.computeIfAbsent(keyPrefix, SegmentAllocator::new).next(date);
+        } else {
+            //自增长
+            count = stringRedisTemplate.opsForValue().increment(key(keyPrefix, date));
+        }
+        if (count >= SnowflakeIdGenerator.MODE_BIT) {
+            throw new IllegalStateException("前缀" + keyPrefix + "当天序列号已用完");
+        }
 
         //3.拼接并返回
 
         return timestamp << COUNT_BIT | count;
     }
+
+    /**
+     * 当前秒数，沿用本地时间按UTC换算的方式
+     */
+    static long currentSeconds() {
+        long now = System.currentTimeMillis() / 1000;
+        return now + ZONE_RULES.getOffset(Instant.ofEpochSecond(now)).getTotalSeconds();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private String date(long epochDay) {
+        Day d = day;
+        if (d.epochDay != epochDay) {
+            d = new Day(epochDay, LocalDate.ofEpochDay(epochDay).format(DATE_FORMATTER));
+            day = d;
+        }
+        return d.date;
+    }
+
+    private static String key(String keyPrefix, String date) {
+        return "icr:" + keyPrefix + ":" + date;
+    }
+
+    private static final class Day {
+        final long epochDay;
+        final String date;
+
+        Day(long epochDay, String date) {
+            this.epochDay = epochDay;
+            this.date = date;
+        }
+    }
+
+    /**
+     * 号段 [start, end]，cursor 为最后分配出去的序列号
+     */
+    private static final class Segment {
+        final String date;
+        final long start;
+        final long end;
+        final long prefetchAt;
+        final AtomicLong cursor;
+
+        Segment(String date, long end, int step, double lowWater) {
+            this.date = date;
+            this.start = end - step + 1;
+            this.end = end;
+            this.prefetchAt = Math.max(start, end - (long) (step * lowWater));
+            this.cursor = new AtomicLong(start - 1);
+        }
+    }
+
+    /**
+     * 单个业务前缀的号段分配器：当前号段内 CAS 自增，用完后切换到预取的号段，
+     * 只有切换号段时加锁
+     */
+    private final class SegmentAllocator {
+        private final String keyPrefix;
+        private volatile Segment current;
+        private volatile Segment next;
+        private final AtomicBoolean prefetching = new AtomicBoolean();
+
+        SegmentAllocator(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        long next(String date) {
+            for (;;) {
+                Segment seg = current;
+                if (seg != null && seg.date.equals(date)) {
+                    long count = seg.cursor.incrementAndGet();
+                    if (count <= seg.end) {
+                        if (count == seg.prefetchAt) {
+                            prefetch(date);
+                        }
+                        return count;
+                    }
+                }
+                switchSegment(seg, date);
+            }
+        }
+
+        private synchronized void switchSegment(Segment exhausted, String date) {
+            if (current != exhausted) {
+                // 其他线程已经切换
+                return;
+            }
+            Segment candidate = next;
+            next = null;
+            if (candidate != null && candidate.date.equals(date)) {
+                current = candidate;
+            } else {
+                // 预取未完成或已跨天，同步申请
+                current = load(date);
+            }
+        }
+
+        private void prefetch(String date) {
+            if (!prefetching.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                prefetchExecutor.execute(() -> {
+                    try {
+                        Segment seg = load(date);
+                        synchronized (this) {
+                            Segment cur = current;
+                            // 同步申请的号段可能已经超过预取的号段，此时丢弃，保证本节点id单调递增
+                            if (next == null && cur != null && cur.date.equals(seg.date) && seg.start > cur.end) {
+                                next = seg;
+                            }
+                        }
+                    } catch (Exception e) {
+                        log.warn("预取id号段失败, 号段用完时同步申请, prefix={}", keyPrefix, e);
+                    } finally {
+                        prefetching.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                prefetching.set(false);
+            }
+        }
+
+        private Segment load(String date) {
+            IdProperties.Segment config = idProperties.getSegment();
+            Long end = stringRedisTemplate.opsForValue().increment(key(keyPrefix, date), config.getStep());
+            return new Segment(date, end, config.getStep(), config.getLowWater());
+        }
+    }
 }
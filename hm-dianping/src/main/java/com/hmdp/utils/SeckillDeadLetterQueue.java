@@ -0,0 +1,168 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.NumberUtil;
+import com.hmdp.entity.VoucherOrder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_DLQ;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+
+/**
+ * 订单死信队列 stream.orders.dlq：重试次数耗尽的订单消息移入这里，不再阻塞消费者，
+ * 修复数据后通过 /admin/seckill/dlq/replay 重新投递。
+ * 死信是未落库的订单，不限制长度也不自动删除，长度通过 hmdp.seckill.dlq.length 监控
+ */
+@Slf4j
+@Component
+public class SeckillDeadLetterQueue {
+    private static final DefaultRedisScript<Long> DEAD_LETTER_SCRIPT;
+    private static final DefaultRedisScript<String> REPLAY_SCRIPT;
+
+    static {
+        DEAD_LETTER_SCRIPT = new DefaultRedisScript<>();
+        DEAD_LETTER_SCRIPT.setLocation(new ClassPathResource("deadletter.lua"));
+        DEAD_LETTER_SCRIPT.setResultType(Long.class);
+        REPLAY_SCRIPT = new DefaultRedisScript<>();
+        REPLAY_SCRIPT.setLocation(new ClassPathResource("replay.lua"));
+        REPLAY_SCRIPT.setResultType(String.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillOrderTracker seckillOrderTracker;
+    private final Counter moved;
+    private final Counter replayed;
+
+    public SeckillDeadLetterQueue(StringRedisTemplate stringRedisTemplate, SeckillOrderTracker seckillOrderTracker,
+                                  MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.seckillOrderTracker = seckillOrderTracker;
+        this.moved = Counter.builder("hmdp.seckill.dlq.moved")
+                .description("重试次数耗尽移入死信队列的订单消息数").register(meterRegistry);
+        this.replayed = Counter.builder("hmdp.seckill.dlq.replayed")
+                .description("从死信队列重新投递的订单消息数").register(meterRegistry);
+    }
+
+    /**
+     * 把消息移入死信队列并在消费者组中确认，订单状态改为failed；
+     * 字段按原值复制，缺失或格式错误的消息同样可以移入
+     *
+     * @param group      消费者组
+     * @param deliveries 已投递次数
+     * @return 是否移入，消息已被确认时返回false
+     */
+    public boolean deadLetter(String group, MapRecord<String, ?, ?> record, long deliveries, String reason) {
+        Map<?, ?> value = record.getValue();
+        Long result = stringRedisTemplate.execute(DEAD_LETTER_SCRIPT, Arrays.asList(SECKILL_ORDER_STREAM, SECKILL_ORDER_DLQ),
+                group, record.getId().getValue(), field(value, "userId"), field(value, "voucherId"), field(value, "id"),
+                String.valueOf(deliveries), reason);
+        if (result == null || result == 0) {
+            return false;
+        }
+        moved.increment();
+        log.error("订单消息重试{}次仍失败，移入死信队列, messageId={}, message={}, reason={}",
+                deliveries, record.getId(), value, reason);
+        VoucherOrder voucherOrder = toOrder(value);
+        if (voucherOrder != null) {
+            seckillOrderTracker.markFailed(voucherOrder, reason);
+        }
+        return true;
+    }
+
+    /**
+     * 按消息id顺序查询死信
+     *
+     * @param from  起始消息id(包含)，为空时从头开始
+     * @param count 最多返回条数
+     */
+    public List<Map<String, Object>> list(String from, int count) {
+        Range<String> range = from == null || from.isEmpty()
+                ? Range.unbounded() : Range.rightUnbounded(Range.Bound.inclusive(from));
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(SECKILL_ORDER_DLQ, range, Limit.limit().count(count));
+        if (records == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> result = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            // 订单字段中已有id(订单id)，死信id用messageId
+            entry.put("messageId", record.getId().getValue());
+            record.getValue().forEach((k, v) -> entry.put(k.toString(), v));
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public long size() {
+        Long size = stringRedisTemplate.opsForStream().size(SECKILL_ORDER_DLQ);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * 把死信重新投递到订单消息流，订单状态改回pending；
+     * 订单已落库时消费者按 uk_user_voucher 查到后跳过，不会重复下单
+     *
+     * @return replayed: 死信id -> 新消息id，missing: 不存在的死信id
+     */
+    public Map<String, Object> replay(List<String> ids) {
+        Map<String, String> replayedIds = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                    .range(SECKILL_ORDER_DLQ, Range.closed(id, id));
+            String newId = records == null || records.isEmpty() ? null
+                    : stringRedisTemplate.execute(REPLAY_SCRIPT, Arrays.asList(SECKILL_ORDER_DLQ, SECKILL_ORDER_STREAM), id);
+            if (newId == null) {
+                missing.add(id);
+                continue;
+            }
+            replayed.increment();
+            replayedIds.put(id, newId);
+            VoucherOrder voucherOrder = toOrder(records.get(0).getValue());
+            if (voucherOrder != null) {
+                seckillOrderTracker.markPending(Collections.singletonList(voucherOrder));
+            }
+        }
+        log.info("重新投递死信{}条, 不存在{}条", replayedIds.size(), missing.size());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("replayed", replayedIds);
+        result.put("missing", missing);
+        return result;
+    }
+
+    /**
+     * 订单字段原值，缺失时为空字符串
+     */
+    private static String field(Map<?, ?> value, String name) {
+        Object v = value.get(name);
+        return v == null ? "" : v.toString();
+    }
+
+    /**
+     * 订单字段都是数字时转换为订单，否则返回null
+     */
+    private static VoucherOrder toOrder(Map<?, ?> value) {
+        String id = field(value, "id");
+        String userId = field(value, "userId");
+        String voucherId = field(value, "voucherId");
+        if (!NumberUtil.isLong(id) || !NumberUtil.isLong(userId) || !NumberUtil.isLong(voucherId)) {
+            return null;
+        }
+        VoucherOrder voucherOrder = new VoucherOrder();
+        voucherOrder.setId(Long.valueOf(id));
+        voucherOrder.setUserId(Long.valueOf(userId));
+        voucherOrder.setVoucherId(Long.valueOf(voucherId));
+        return voucherOrder;
+    }
+}
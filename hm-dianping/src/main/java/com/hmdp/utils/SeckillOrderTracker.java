@@ -0,0 +1,173 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.VoucherOrder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_STATUS_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SECKILL_STATUS_KEY;
+
+/**
+ * 秒杀订单异步处理状态：seckill:status:{orderId} 哈希，秒杀脚本写入 pending，
+ * 消费者落库后改为 persisted，用户已有其他订单时改为 rejected，重试次数耗尽移入死信队列时改为 failed；状态变化通过Redis发布订阅通知各节点上等待的请求。
+ * 终态在本地缓存，轮询不再访问Redis
+ */
+@Slf4j
+@Component
+public class SeckillOrderTracker {
+    public static final String PENDING = "pending";
+    public static final String PERSISTED = "persisted";
+    public static final String FAILED = "failed";
+    public static final String REJECTED = "rejected";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    /**
+     * 订单id -> 终态，pending 会变化不缓存
+     */
+    private Cache<Long, Map<Object, Object>> terminal;
+    /**
+     * 订单id -> 等待状态变化的回调
+     */
+    private final Map<Long, List<Runnable>> waiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        SeckillProperties.Status config = seckillProperties.getStatus();
+        terminal = Caffeine.newBuilder()
+                .maximumSize(config.getLocalCacheSize())
+                .expireAfterWrite(config.getLocalCacheTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(SECKILL_STATUS_CHANNEL));
+    }
+
+    /**
+     * 查询订单状态
+     *
+     * @return 包含 status/userId/voucherId 的哈希，不存在或已过期时返回空Map
+     */
+    public Map<Object, Object> status(Long orderId) {
+        SeckillProperties.Status config = seckillProperties.getStatus();
+        if (config.isLocalCache()) {
+            Map<Object, Object> cached = terminal.getIfPresent(orderId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Map<Object, Object> status = stringRedisTemplate.opsForHash().entries(SECKILL_STATUS_KEY + orderId);
+        if (config.isLocalCache() && !status.isEmpty() && !PENDING.equals(status.get("status"))) {
+            terminal.put(orderId, status);
+        }
+        return status;
+    }
+
+    /**
+     * 订单已落库
+     */
+    public void markPersisted(List<VoucherOrder> voucherOrders) {
+        update(voucherOrders, PERSISTED, null);
+    }
+
+    /**
+     * 订单未落库，用户已有该券的其他订单
+     */
+    public void markRejected(List<VoucherOrder> voucherOrders, String reason) {
+        update(voucherOrders, REJECTED, reason);
+    }
+
+    /**
+     * 死信重新投递，等待消费者处理
+     */
+    public void markPending(List<VoucherOrder> voucherOrders) {
+        update(voucherOrders, PENDING, null);
+    }
+
+    /**
+     * 订单处理失败，已移入死信队列
+     */
+    public void markFailed(VoucherOrder voucherOrder, String reason) {
+        update(Collections.singletonList(voucherOrder), FAILED, reason);
+    }
+
+    /**
+     * 注册状态变化回调，调用方负责在结束等待时 removeWaiter
+     */
+    public void addWaiter(Long orderId, Runnable callback) {
+        waiters.computeIfAbsent(orderId, k -> new CopyOnWriteArrayList<>()).add(callback);
+    }
+
+    public void removeWaiter(Long orderId, Runnable callback) {
+        waiters.computeIfPresent(orderId, (k, list) -> {
+            list.remove(callback);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private void update(List<VoucherOrder> voucherOrders, String status, String reason) {
+        if (voucherOrders.isEmpty()) {
+            return;
+        }
+        long ttl = seckillProperties.getStatus().getTtl().getSeconds();
+        String orderIds = voucherOrders.stream().map(o -> o.getId().toString()).collect(Collectors.joining(","));
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (VoucherOrder voucherOrder : voucherOrders) {
+                    byte[] key = bytes(SECKILL_STATUS_KEY + voucherOrder.getId());
+                    Map<byte[], byte[]> fields = new HashMap<>(8);
+                    fields.put(bytes("status"), bytes(status));
+                    fields.put(bytes("userId"), bytes(voucherOrder.getUserId().toString()));
+                    fields.put(bytes("voucherId"), bytes(voucherOrder.getVoucherId().toString()));
+                    if (reason != null) {
+                        fields.put(bytes("reason"), bytes(reason));
+                    } else {
+                        connection.hDel(key, bytes("reason"));
+                    }
+                    connection.hMSet(key, fields);
+                    connection.expire(key, ttl);
+                }
+                connection.publish(bytes(SECKILL_STATUS_CHANNEL), bytes(orderIds));
+                return null;
+            });
+        } catch (Exception e) {
+            // 状态只用于查询，更新失败不影响订单处理，状态过期后按数据库查询
+            log.warn("更新秒杀订单状态失败, status={}, orderIds={}", status, orderIds, e);
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        for (String id : new String(message.getBody(), StandardCharsets.UTF_8).split(",")) {
+            Long orderId = Long.valueOf(id);
+            terminal.invalidate(orderId);
+            List<Runnable> callbacks = waiters.get(orderId);
+            if (callbacks != null) {
+                callbacks.forEach(Runnable::run);
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.hmdp.config.SeckillProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_CONF_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_LIMIT_KEY;
+
+/**
+ * 秒杀限流：先用本地令牌桶限制单个用户，再用Redis令牌桶限制单张券的全局请求速率
+ * 券的速率在创建时写入 seckill:conf:{voucherId} 的 rate/burst 字段，未配置时使用默认值，速率为0表示不限流
+ */
+@Slf4j
+@Component
+public class SeckillRateLimiter {
+    private static final DefaultRedisScript<Long> RATE_LIMIT_SCRIPT;
+
+    static {
+        RATE_LIMIT_SCRIPT = new DefaultRedisScript<>();
+        RATE_LIMIT_SCRIPT.setLocation(new ClassPathResource("ratelimit.lua"));
+        RATE_LIMIT_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillProperties.RateLimit config;
+    /**
+     * 用户id -> 本地令牌桶，长时间不访问后淘汰
+     */
+    private final Cache<Long, TokenBucket> userBuckets;
+    /**
+     * 券id -> [速率, 容量]，定期从redis刷新
+     */
+    private final LoadingCache<Long, double[]> voucherLimits;
+    private final Counter userRejected;
+    private final Counter voucherRejected;
+
+    public SeckillRateLimiter(StringRedisTemplate stringRedisTemplate, SeckillProperties seckillProperties,
+                              MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.config = seckillProperties.getRateLimit();
+        this.userBuckets = Caffeine.newBuilder()
+                .maximumSize(config.getMaxUsers())
+                .expireAfterAccess(1, TimeUnit.MINUTES)
+                .build();
+        this.voucherLimits = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(config.getConfigRefresh().toMillis(), TimeUnit.MILLISECONDS)
+                .build(this::loadVoucherLimit);
+        this.userRejected = Counter.builder("hmdp.seckill.rate.rejected").tag("scope", "user").register(meterRegistry);
+        this.voucherRejected = Counter.builder("hmdp.seckill.rate.rejected").tag("scope", "voucher").register(meterRegistry);
+    }
+
+    /**
+     * 创建秒杀券时保存限流配置
+     *
+     * @param rate  每秒允许的请求数，为空时使用默认值
+     * @param burst 允许的突发请求数，为空时等于rate
+     */
+    public void configure(Long voucherId, Integer rate, Integer burst) {
+        if (rate == null) {
+            return;
+        }
+        int capacity = burst == null ? rate : burst;
+        stringRedisTemplate.opsForHash().put(SECKILL_CONF_KEY + voucherId, "rate", String.valueOf(rate));
+        stringRedisTemplate.opsForHash().put(SECKILL_CONF_KEY + voucherId, "burst", String.valueOf(capacity));
+        voucherLimits.put(voucherId, new double[]{rate, capacity});
+    }
+
+    /**
+     * 获取许可
+     *
+     * @return 0表示通过，否则为建议的重试等待毫秒数
+     */
+    public long tryAcquire(Long userId, Long voucherId) {
+        if (!config.isEnabled()) {
+            return 0;
+        }
+        if (config.getUserRate() > 0) {
+            long wait = userBuckets.get(userId, k -> new TokenBucket(config.getUserRate(), config.getUserBurst()))
+                    .tryAcquire();
+            if (wait > 0) {
+                userRejected.increment();
+                return wait;
+            }
+        }
+        double[] limit = voucherLimits.get(voucherId);
+        if (limit == null || limit[0] <= 0) {
+            return 0;
+        }
+        try {
+            Long wait = stringRedisTemplate.execute(RATE_LIMIT_SCRIPT,
+                    Collections.singletonList(SECKILL_LIMIT_KEY + voucherId),
+                    String.valueOf(limit[0]), String.valueOf(limit[1]));
+            if (wait != null && wait > 0) {
+                voucherRejected.increment();
+                return wait;
+            }
+        } catch (Exception e) {
+            // 限流失败时放行，由秒杀脚本保证不超卖
+            log.warn("秒杀券限流脚本执行失败, voucherId={}", voucherId, e);
+        }
+        return 0;
+    }
+
+    private double[] loadVoucherLimit(Long voucherId) {
+        List<Object> values = stringRedisTemplate.opsForHash()
+                .multiGet(SECKILL_CONF_KEY + voucherId, Arrays.asList("rate", "burst"));
+        if (values.get(0) == null) {
+            return new double[]{config.getVoucherRate(), config.getVoucherBurst()};
+        }
+        double rate = Double.parseDouble(values.get(0).toString());
+        double burst = values.get(1) == null ? rate : Double.parseDouble(values.get(1).toString());
+        return new double[]{rate, burst};
+    }
+}
@@ -0,0 +1,137 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.mapper.SeckillVoucherMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SCHEDULE_CHANNEL;
+
+/**
+ * 本地缓存的秒杀时间窗口，不在窗口内或不存在的券在本地直接拒绝
+ * 启动时加载未结束的秒杀券，新增秒杀券的事务提交后通过发布订阅同步到各节点，并定时全量重新加载；
+ * 重新加载的结果合并到现有窗口，不会覆盖加载期间登记的新券
+ */
+@Slf4j
+@Component
+public class SeckillSchedule {
+
+    public enum Admission {
+        OPEN, NOT_STARTED, ENDED, UNKNOWN
+    }
+
+    @Resource
+    private SeckillVoucherMapper seckillVoucherMapper;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 券id -> [开始时间, 结束时间] 毫秒时间戳
+     */
+    private final Map<Long, long[]> windows = new ConcurrentHashMap<>();
+    /**
+     * 加载完成前不做判断，交给Lua脚本
+     */
+    private volatile boolean ready;
+
+    @PostConstruct
+    private void init() {
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(SECKILL_SCHEDULE_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "#{@seckillProperties.scheduleReload.toMillis()}",
+            fixedDelayString = "#{@seckillProperties.scheduleReload.toMillis()}")
+    public void reload() {
+        try {
+            List<SeckillVoucher> vouchers = seckillVoucherMapper.selectList(new LambdaQueryWrapper<SeckillVoucher>()
+                    .select(SeckillVoucher::getVoucherId, SeckillVoucher::getBeginTime, SeckillVoucher::getEndTime)
+                    .gt(SeckillVoucher::getEndTime, LocalDateTime.now()));
+            for (SeckillVoucher voucher : vouchers) {
+                windows.put(voucher.getVoucherId(), new long[]{millis(voucher.getBeginTime()), millis(voucher.getEndTime())});
+            }
+            // 只删除已结束的券，查询之后才提交的新券不在本次结果中，不能删除
+            long now = System.currentTimeMillis();
+            windows.values().removeIf(window -> window[1] < now);
+            ready = true;
+            log.debug("秒杀时间窗口加载完成, 数量={}", vouchers.size());
+        } catch (Exception e) {
+            log.error("秒杀时间窗口加载失败", e);
+        }
+    }
+
+    public Admission admit(Long voucherId) {
+        if (!ready) {
+            return Admission.OPEN;
+        }
+        long[] window = windows.get(voucherId);
+        if (window == null) {
+            return Admission.UNKNOWN;
+        }
+        long now = System.currentTimeMillis();
+        if (now < window[0]) {
+            return Admission.NOT_STARTED;
+        }
+        return now > window[1] ? Admission.ENDED : Admission.OPEN;
+    }
+
+    /**
+     * 新增秒杀券后登记时间窗口，并通知其他节点；在事务中调用时等事务提交后再登记，回滚的券不会被放行
+     */
+    public void put(Long voucherId, LocalDateTime beginTime, LocalDateTime endTime) {
+        long begin = millis(beginTime);
+        long end = millis(endTime);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            register(voucherId, begin, end);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                register(voucherId, begin, end);
+            }
+        });
+    }
+
+    private void register(Long voucherId, long begin, long end) {
+        windows.put(voucherId, new long[]{begin, end});
+        try {
+            stringRedisTemplate.convertAndSend(SECKILL_SCHEDULE_CHANNEL, voucherId + "|" + begin + "|" + end);
+        } catch (Exception e) {
+            log.warn("发布秒杀时间窗口失败, voucherId={}", voucherId, e);
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length != 3) {
+            return;
+        }
+        windows.put(Long.valueOf(parts[0]), new long[]{Long.parseLong(parts[1]), Long.parseLong(parts[2])});
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,295 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.SeckillProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 秒杀库存在Redis中的布局
+ * 库存: seckill:stock:{voucherId}，下单用户集合: seckill:order:{voucherId}
+ * 位图去重: seckill:conf:{voucherId} 的 dedup 字段为 bitmap 时，下单用户记录在
+ * seckill:order:{voucherId}:b:{userId / 65536} 的第 userId % 65536 位
+ * 库存分片: seckill:conf:{voucherId} 的 shards 字段大于1时，库存拆分到 seckill:stock:{voucherId:shard}，
+ * 用户按 userId % shards 路由到所在分片，下单用户记录在 seckill:order:{voucherId:shard}(位图模式再按 userId / shards 分块)，
+ * 同一分片的库存和下单用户key带相同的hash tag；所在分片售罄时依次从其他分片预扣库存
+ * 去重方式和分片数创建券后不再变化，在本地缓存，秒杀脚本用到的key都由这里计算后通过KEYS传入
+ */
+@Slf4j
+@Component
+public class SeckillStockManager {
+    /**
+     * 位图模式每个分块记录的用户数
+     */
+    private static final long BITMAP_CHUNK = 65536;
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private static final DefaultRedisScript<Long> STOCK_TAKE_SCRIPT;
+
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+        STOCK_TAKE_SCRIPT = new DefaultRedisScript<>();
+        STOCK_TAKE_SCRIPT.setLocation(new ClassPathResource("stocktake.lua"));
+        STOCK_TAKE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillProperties seckillProperties;
+    /**
+     * 券id -> 库存分片数和去重方式
+     */
+    private final Cache<Long, Layout> layouts = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    public SeckillStockManager(StringRedisTemplate stringRedisTemplate, SeckillProperties seckillProperties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.seckillProperties = seckillProperties;
+    }
+
+    /**
+     * 初始化秒杀库存
+     *
+     * @param shards 库存分片数，为空时使用默认配置
+     * @param dedup  下单用户去重方式 set/bitmap，为空时使用默认配置
+     */
+    public void init(Long voucherId, int stock, Integer shards, String dedup) {
+        SeckillProperties.OrderDedup orderDedup = dedup == null
+                ? seckillProperties.getOrderDedup() : SeckillProperties.OrderDedup.valueOf(dedup.toUpperCase());
+        Layout layout = new Layout(Math.max(1, shards == null ? seckillProperties.getStockShards() : shards),
+                orderDedup == SeckillProperties.OrderDedup.BITMAP);
+        List<String> stockKeys = stockKeys(voucherId, layout);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // 库存平均分配，余数分给前面的分片
+            for (int i = 0; i < layout.shards; i++) {
+                int part = stock / layout.shards + (i < stock % layout.shards ? 1 : 0);
+                connection.set(bytes(stockKeys.get(i)), bytes(String.valueOf(part)));
+            }
+            if (layout.bitmap) {
+                connection.hSet(bytes(SECKILL_CONF_KEY + voucherId), bytes("dedup"), bytes("bitmap"));
+            }
+            if (layout.shards > 1) {
+                connection.hSet(bytes(SECKILL_CONF_KEY + voucherId), bytes("shards"), bytes(String.valueOf(layout.shards)));
+            }
+            return null;
+        });
+        layouts.put(voucherId, layout);
+    }
+
+    /**
+     * 执行秒杀脚本：判断库存和是否重复下单，扣库存、记录下单用户并发送订单消息
+     * 分片模式下用户所在分片售罄时，先从其他分片预扣一个库存，再以已预扣方式执行脚本
+     *
+     * @param statusTtl 订单状态过期秒数，0不记录状态
+     * @return 0:成功 1:库存不足 2:重复下单
+     */
+    public Long seckill(Long voucherId, Long userId, long orderId, long statusTtl) {
+        Layout layout = layout(voucherId);
+        int home = layout.shards == 1 ? 0 : (int) Math.floorMod(userId, (long) layout.shards);
+        Long result = seckill(voucherId, userId, orderId, statusTtl, layout, home, false);
+        if (layout.shards == 1 || result == null || result != 1) {
+            return result;
+        }
+        for (int i = 1; i < layout.shards; i++) {
+            String sibling = stockKey(voucherId, layout, (home + i) % layout.shards);
+            Long taken = stringRedisTemplate.execute(STOCK_TAKE_SCRIPT, Collections.singletonList(sibling));
+            if (taken == null || taken != 1) {
+                continue;
+            }
+            try {
+                result = seckill(voucherId, userId, orderId, statusTtl, layout, home, true);
+            } catch (RuntimeException e) {
+                // 不确定脚本是否已执行，不归还库存，宁可少卖也不超卖，偏差由对账发现
+                log.error("秒杀券{}从分片{}预扣库存后下单失败, userId={}", voucherId, sibling, userId, e);
+                throw e;
+            }
+            if (result == null || result != 0) {
+                // 重复下单，归还预扣的库存
+                stringRedisTemplate.opsForValue().increment(sibling);
+            }
+            return result;
+        }
+        return 1L;
+    }
+
+    private Long seckill(Long voucherId, Long userId, long orderId, long statusTtl,
+                         Layout layout, int shard, boolean reserved) {
+        // 分片模式下位图按分片内序号 userId / shards 分块
+        long index = layout.shards == 1 ? userId : userId / layout.shards;
+        String orderKey = layout.bitmap
+                ? orderKey(voucherId, layout, shard) + ":b:" + index / BITMAP_CHUNK
+                : orderKey(voucherId, layout, shard);
+        return stringRedisTemplate.execute(SECKILL_SCRIPT,
+                Arrays.asList(stockKey(voucherId, layout, shard), orderKey, SECKILL_ORDER_STREAM, SECKILL_STATUS_KEY + orderId),
+                voucherId.toString(),
+                userId.toString(),
+                String.valueOf(orderId),
+                layout.bitmap ? String.valueOf(index % BITMAP_CHUNK) : "",
+                String.valueOf(statusTtl),
+                reserved ? "1" : "0");
+    }
+
+    /**
+     * 补充库存，分片模式下平均分配到各分片
+     */
+    public void replenish(Long voucherId, int amount) {
+        List<String> keys = stockKeys(voucherId);
+        if (keys.size() == 1) {
+            stringRedisTemplate.opsForValue().increment(keys.get(0), amount);
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                int part = amount / keys.size() + (i < amount % keys.size() ? 1 : 0);
+                if (part != 0) {
+                    connection.incrBy(bytes(keys.get(i)), part);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Redis中的库存key，分片模式下为全部分片
+     */
+    public List<String> stockKeys(Long voucherId) {
+        return stockKeys(voucherId, layout(voucherId));
+    }
+
+    /**
+     * 是否使用位图记录下单用户
+     */
+    public boolean bitmap(Long voucherId) {
+        return layout(voucherId).bitmap;
+    }
+
+    /**
+     * Redis中的下单用户集合key，位图模式下为已使用的全部分块
+     */
+    public List<String> orderKeys(Long voucherId) {
+        Layout layout = layout(voucherId);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < layout.shards; i++) {
+            if (layout.bitmap) {
+                keys.addAll(bitmapKeys(orderKey(voucherId, layout, i)));
+            } else {
+                keys.add(orderKey(voucherId, layout, i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Redis中已下单的用户数，位图模式下为各分块置位数之和
+     */
+    public long sold(Long voucherId) {
+        boolean bitmap = bitmap(voucherId);
+        List<String> keys = orderKeys(voucherId);
+        List<Object> sizes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                if (bitmap) {
+                    connection.bitCount(bytes(key));
+                } else {
+                    connection.sCard(bytes(key));
+                }
+            }
+            return null;
+        });
+        long total = 0;
+        for (Object size : sizes) {
+            total += size == null ? 0 : (Long) size;
+        }
+        return total;
+    }
+
+    /**
+     * Redis中剩余库存，分片模式下为各分片之和
+     */
+    public long remaining(Long voucherId) {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(stockKeys(voucherId));
+        long total = 0;
+        if (values != null) {
+            for (String value : values) {
+                total += value == null ? 0 : Long.parseLong(value);
+            }
+        }
+        return total;
+    }
+
+    private Layout layout(Long voucherId) {
+        return layouts.get(voucherId, id -> {
+            List<Object> conf = stringRedisTemplate.opsForHash().multiGet(SECKILL_CONF_KEY + id, Arrays.asList("shards", "dedup"));
+            Object shards = conf.get(0);
+            return new Layout(shards == null ? 1 : Integer.parseInt(shards.toString()), "bitmap".equals(conf.get(1)));
+        });
+    }
+
+    private List<String> stockKeys(Long voucherId, Layout layout) {
+        List<String> keys = new ArrayList<>(layout.shards);
+        for (int i = 0; i < layout.shards; i++) {
+            keys.add(stockKey(voucherId, layout, i));
+        }
+        return keys;
+    }
+
+    private static String stockKey(Long voucherId, Layout layout, int shard) {
+        return layout.shards == 1 ? SECKILL_STOCK_KEY + voucherId : SECKILL_STOCK_KEY + hashTag(voucherId, shard);
+    }
+
+    private static String orderKey(Long voucherId, Layout layout, int shard) {
+        return layout.shards == 1 ? SECKILL_ORDER_KEY + voucherId : SECKILL_ORDER_KEY + hashTag(voucherId, shard);
+    }
+
+    /**
+     * 同一分片的库存key和下单用户key使用相同的hash tag，在集群中落在同一个slot
+     */
+    private static String hashTag(Long voucherId, int shard) {
+        return "{" + voucherId + ":" + shard + "}";
+    }
+
+    /**
+     * 位图分块不固定，通过SCAN查找，只在对账等低频场景使用
+     */
+    private List<String> bitmapKeys(String orderKey) {
+        ScanOptions options = ScanOptions.scanOptions().match(orderKey + ":b:*").count(1000).build();
+        return stringRedisTemplate.execute((RedisCallback<List<String>>) connection -> {
+            List<String> keys = new ArrayList<>();
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                cursor.forEachRemaining(key -> keys.add(new String(key, StandardCharsets.UTF_8)));
+            }
+            return keys;
+        });
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Layout {
+        private final int shards;
+        private final boolean bitmap;
+
+        private Layout(int shards, boolean bitmap) {
+            this.shards = shards;
+            this.bitmap = bitmap;
+        }
+    }
+}
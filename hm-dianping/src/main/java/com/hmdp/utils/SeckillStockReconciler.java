@@ -0,0 +1,167 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 秒杀库存对账：以Redis为准，总量 = 剩余库存 + 已下单用户数，
+ * 数据库应满足 tb_seckill_voucher.stock = 总量 - 已落库订单数 - 各节点未回写的扣减量之和。
+ * 连续两次对账偏差相同(排除正在回写和正在消费的订单)时修复数据库库存；
+ * Redis库存key不存在或已下单用户数少于已落库订单数说明Redis数据丢失，只告警不修复
+ */
+@Slf4j
+@Component
+public class SeckillStockReconciler {
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private SeckillStockManager seckillStockManager;
+    @Resource
+    private SeckillStockWriter seckillStockWriter;
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+    @Resource
+    private SeckillProperties seckillProperties;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private volatile int driftVouchers;
+    private volatile List<Map<String, Object>> lastReport = Collections.emptyList();
+
+    @PostConstruct
+    private void init() {
+        Gauge.builder("hmdp.seckill.stock.drift.vouchers", this, r -> r.driftVouchers)
+                .description("最近一次对账库存不一致的秒杀券数").register(meterRegistry);
+    }
+
+    /**
+     * 最近一次对账结果
+     */
+    public List<Map<String, Object>> lastReport() {
+        return lastReport;
+    }
+
+    @Scheduled(initialDelayString = "#{@seckillProperties.stockSync.reconcileInterval.toMillis()}",
+            fixedDelayString = "#{@seckillProperties.stockSync.reconcileInterval.toMillis()}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * 对账进行中或近期结束的秒杀券，多个节点同时触发时只有一个执行
+     *
+     * @return 各秒杀券的对账结果，未抢到锁时返回上一次的结果
+     */
+    public List<Map<String, Object>> reconcile() {
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_RECONCILE_KEY, "1", LOCK_RECONCILE_TTL, TimeUnit.SECONDS);
+        if (!BooleanUtil.isTrue(locked)) {
+            return lastReport;
+        }
+        try {
+            SeckillProperties.StockSync config = seckillProperties.getStockSync();
+            List<SeckillVoucher> vouchers = seckillVoucherService.lambdaQuery()
+                    .ge(SeckillVoucher::getEndTime, LocalDateTime.now().minus(config.getReconcileWindow()))
+                    .list();
+            List<Map<String, Object>> report = new ArrayList<>(vouchers.size());
+            int drifted = 0;
+            for (SeckillVoucher voucher : vouchers) {
+                try {
+                    Map<String, Object> result = reconcile(voucher.getVoucherId(), config.isRepair());
+                    if ((long) result.get("drift") != 0) {
+                        drifted++;
+                    }
+                    report.add(result);
+                } catch (Exception e) {
+                    log.error("秒杀库存对账失败, voucherId={}", voucher.getVoucherId(), e);
+                }
+            }
+            driftVouchers = drifted;
+            lastReport = report;
+            return report;
+        } finally {
+            stringRedisTemplate.delete(LOCK_RECONCILE_KEY);
+        }
+    }
+
+    private Map<String, Object> reconcile(Long voucherId, boolean repair) {
+        long redisRemaining = seckillStockManager.remaining(voucherId);
+        long redisSold = seckillStockManager.sold(voucherId);
+        long pendingDelta = seckillStockWriter.clusterPending(voucherId);
+        long dbOrders = voucherOrderService.lambdaQuery().eq(VoucherOrder::getVoucherId, voucherId).count();
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        long dbStock = voucher.getStock();
+        long drift = drift(dbStock, pendingDelta, redisRemaining, redisSold, dbOrders);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("voucherId", voucherId);
+        result.put("redisRemaining", redisRemaining);
+        result.put("redisSold", redisSold);
+        result.put("dbStock", dbStock);
+        result.put("dbOrders", dbOrders);
+        result.put("pendingDelta", pendingDelta);
+        result.put("drift", drift);
+        String field = voucherId.toString();
+        if (drift == 0) {
+            stringRedisTemplate.opsForHash().delete(SECKILL_RECONCILE_KEY, field);
+            result.put("action", "none");
+            return result;
+        }
+        // 库存key(任一分片)不存在或下单用户数少于已落库订单数，说明Redis数据丢失，不能以Redis为准修复
+        List<String> stockKeys = seckillStockManager.stockKeys(voucherId);
+        Long existing = stringRedisTemplate.countExistingKeys(stockKeys);
+        boolean redisLost = redisSold < dbOrders || existing == null || existing < stockKeys.size();
+        if (redisLost) {
+            log.error("秒杀券{}的Redis下单记录少于已落库订单, Redis数据可能丢失, 需人工处理: {}", voucherId, result);
+            result.put("action", "redis_lost");
+            return result;
+        }
+        // 各项不是同时读取的，与上一次对账的偏差相同才认为是稳定偏差，排除正在回写和补充库存的中间状态
+        Object previous = stringRedisTemplate.opsForHash().get(SECKILL_RECONCILE_KEY, field);
+        stringRedisTemplate.opsForHash().put(SECKILL_RECONCILE_KEY, field, String.valueOf(drift));
+        if (!repair || previous == null || Long.parseLong(previous.toString()) != drift) {
+            log.warn("秒杀券{}库存不一致: {}", voucherId, result);
+            result.put("action", "reported");
+            return result;
+        }
+        seckillVoucherService.update()
+                .setSql("stock = stock - " + drift)
+                .eq("voucher_id", voucherId)
+                .update();
+        stringRedisTemplate.opsForHash().delete(SECKILL_RECONCILE_KEY, field);
+        log.warn("秒杀券{}库存不一致, 已修复数据库库存: {}", voucherId, result);
+        result.put("action", "repaired");
+        return result;
+    }
+
+    /**
+     * 数据库库存与Redis推算值的偏差，正数表示数据库库存偏多(扣减量丢失)，负数表示偏少
+     */
+    static long drift(long dbStock, long pendingDelta, long redisRemaining, long redisSold, long dbOrders) {
+        return dbStock - pendingDelta - (redisRemaining + redisSold - dbOrders);
+    }
+}
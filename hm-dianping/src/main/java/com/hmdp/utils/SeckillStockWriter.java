@@ -0,0 +1,202 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.RuntimeUtil;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.service.ISeckillVoucherService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_PENDING_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_PENDING_WRITERS_KEY;
+
+/**
+ * 秒杀库存异步回写：订单落库后只在本地累计每张券的扣减量，定时一次 stock = stock - k 写入数据库，
+ * 避免每批订单都去更新同一行而在行锁上串行。
+ * 超卖由Lua脚本保证，回写时只做 stock >= k 的保护，库存不足时扣到0并记录差额；
+ * 进程异常退出时未写入的扣减量和差额由 SeckillStockReconciler 修复。
+ * 停机时由 VoucherOrderServiceImpl 在订单线程结束后最后一次调用 flush
+ * 各节点未写入的扣减量同时登记在 seckill:pending:{voucherId} 的本节点字段，并在
+ * seckill:pending:writers 中记录心跳，对账时汇总所有存活节点的扣减量
+ */
+@Slf4j
+@Component
+public class SeckillStockWriter {
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    private final String nodeId = NetUtil.getLocalHostName() + "-" + RuntimeUtil.getPid() + "-" + UUID.randomUUID().toString(true);
+
+    /**
+     * 券id -> 待写入的扣减量
+     */
+    private final Map<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+    /**
+     * 已在Redis登记了非0扣减量的券id
+     */
+    private final Set<Long> reported = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    private void init() {
+        // 先登记心跳，避免第一次 flush 前登记的扣减量被当作已下线节点清除
+        sync();
+    }
+
+    /**
+     * 记录库存扣减，在事务中调用时提交成功后才计入
+     */
+    public void decrement(Long voucherId, int amount) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(voucherId, amount);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(voucherId, amount);
+            }
+        });
+    }
+
+    /**
+     * 本节点尚未写入数据库的扣减量
+     */
+    public long pending(Long voucherId) {
+        AtomicLong delta = pending.get(voucherId);
+        return delta == null ? 0 : delta.get();
+    }
+
+    /**
+     * 所有存活节点尚未写入数据库的扣减量，超时未心跳的节点视为已下线，
+     * 其扣减量已随进程丢失，不计入并清除，由对账按偏差修复
+     */
+    public long clusterPending(Long voucherId) {
+        String key = SECKILL_PENDING_KEY + voucherId;
+        Map<Object, Object> deltas = stringRedisTemplate.opsForHash().entries(key);
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        long deadline = System.currentTimeMillis() - seckillProperties.getStockSync().getWriterTimeout().toMillis();
+        Set<String> alive = stringRedisTemplate.opsForZSet()
+                .rangeByScore(SECKILL_PENDING_WRITERS_KEY, deadline, Double.POSITIVE_INFINITY);
+        long total = 0;
+        for (Map.Entry<Object, Object> entry : deltas.entrySet()) {
+            if (alive != null && alive.contains(entry.getKey().toString())) {
+                total += Long.parseLong(entry.getValue().toString());
+            } else {
+                log.warn("节点{}已下线, 忽略其未回写的秒杀库存扣减量, voucherId={}, 扣减量={}",
+                        entry.getKey(), voucherId, entry.getValue());
+                stringRedisTemplate.opsForHash().delete(key, entry.getKey());
+            }
+        }
+        return total;
+    }
+
+    @Scheduled(fixedDelayString = "#{@seckillProperties.stockSync.flushInterval.toMillis()}")
+    public void flush() {
+        pending.forEach((voucherId, delta) -> {
+            long amount = delta.getAndSet(0);
+            if (amount == 0) {
+                return;
+            }
+            try {
+                write(voucherId, amount, delta);
+            } catch (Exception e) {
+                // 放回去下次重试
+                delta.addAndGet(amount);
+                log.warn("回写秒杀库存失败, voucherId={}, 扣减量={}", voucherId, amount, e);
+            }
+        });
+        sync();
+    }
+
+    /**
+     * 心跳，并以本地值校正Redis中登记的扣减量(登记失败或回写后)
+     */
+    private void sync() {
+        try {
+            stringRedisTemplate.opsForZSet().add(SECKILL_PENDING_WRITERS_KEY, nodeId, System.currentTimeMillis());
+            pending.forEach((voucherId, delta) -> {
+                long amount = delta.get();
+                if (amount != 0) {
+                    stringRedisTemplate.opsForHash().put(SECKILL_PENDING_KEY + voucherId, nodeId, String.valueOf(amount));
+                    reported.add(voucherId);
+                } else if (reported.remove(voucherId)) {
+                    stringRedisTemplate.opsForHash().delete(SECKILL_PENDING_KEY + voucherId, nodeId);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("登记未回写的秒杀库存扣减量失败", e);
+        }
+    }
+
+    private void write(Long voucherId, long amount, AtomicLong delta) {
+        boolean updated = seckillVoucherService.update()
+                .setSql("stock = stock - " + amount)
+                .eq("voucher_id", voucherId)
+                .ge("stock", amount)
+                .update();
+        if (updated) {
+            return;
+        }
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        if (voucher == null) {
+            log.error("回写秒杀库存失败, 秒杀券不存在, voucherId={}, 扣减量={}", voucherId, amount);
+            return;
+        }
+        // 数据库库存少于扣减量，说明与Redis已有偏差，扣到0，差额交给对账处理
+        boolean cleared = seckillVoucherService.update()
+                .set("stock", 0)
+                .eq("voucher_id", voucherId)
+                .eq("stock", voucher.getStock())
+                .update();
+        if (!cleared) {
+            // 期间库存有变化(其他节点回写或补充库存)，下次重试
+            delta.addAndGet(amount);
+            return;
+        }
+        log.error("回写秒杀库存时数据库库存不足, voucherId={}, 库存={}, 扣减量={}, 差额={}",
+                voucherId, voucher.getStock(), amount, amount - voucher.getStock());
+    }
+
+    /**
+     * 兜底，正常情况下订单线程结束后已经调用过 flush
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        // 全部写入后退出心跳，仍有未写入的扣减量时保留登记，超时后由对账处理
+        if (reported.isEmpty()) {
+            stringRedisTemplate.opsForZSet().remove(SECKILL_PENDING_WRITERS_KEY, nodeId);
+        }
+    }
+
+    private void add(Long voucherId, int amount) {
+        pending.computeIfAbsent(voucherId, k -> new AtomicLong()).addAndGet(amount);
+        try {
+            stringRedisTemplate.opsForHash().increment(SECKILL_PENDING_KEY + voucherId, nodeId, amount);
+            reported.add(voucherId);
+        } catch (Exception e) {
+            // 下次 flush 时以本地值校正
+            log.warn("登记未回写的秒杀库存扣减量失败, voucherId={}, 扣减量={}", voucherId, amount, e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_DLQ;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+
+/**
+ * 订单消息流监控与清理
+ * 定时采集各消费者组的待确认数、最早待确认消息的等待时间和未投递消息的积压时间，导出为指标；
+ * 定时按水位线 XTRIM MINID 删除所有组都已确认、且超过保留时间的消息，保证多次秒杀后内存不增长；
+ * 死信队列没有消费者组，不按水位线清理也不限制长度，重新投递后删除
+ */
+@Slf4j
+@Component
+public class SeckillStreamMonitor {
+    private static final DefaultRedisScript<Long> TRIM_SCRIPT;
+
+    static {
+        TRIM_SCRIPT = new DefaultRedisScript<>();
+        TRIM_SCRIPT.setLocation(new ClassPathResource("trim.lua"));
+        TRIM_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillProperties.Stream config;
+    private final MeterRegistry meterRegistry;
+    /**
+     * 组名 -> 最近一次采集结果，指标从这里读取，避免每次抓取都访问redis
+     */
+    private final Map<String, GroupStats> groupStats = new ConcurrentHashMap<>();
+    private volatile long length;
+    private volatile long deadLetters;
+    private volatile Map<String, Object> snapshot = Collections.emptyMap();
+
+    public SeckillStreamMonitor(StringRedisTemplate stringRedisTemplate, SeckillProperties seckillProperties,
+                                MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.config = seckillProperties.getStream();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("hmdp.seckill.stream.length", this, m -> m.length)
+                .description("订单消息流长度").register(meterRegistry);
+        Gauge.builder("hmdp.seckill.dlq.length", this, m -> m.deadLetters)
+                .description("订单死信队列长度").register(meterRegistry);
+    }
+
+    /**
+     * 最近一次采集的消息流状态
+     */
+    public Map<String, Object> snapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "#{@seckillProperties.stream.monitorInterval.toMillis()}")
+    public void collect() {
+        try {
+            snapshot = doCollect();
+        } catch (Exception e) {
+            log.warn("采集订单消息流状态失败", e);
+        }
+    }
+
+    /**
+     * 按水位线清理：每个组取 min(最早待确认消息, 最后投递的消息)，再与保留时间取较小值，
+     * 比水位线旧的消息一定已被所有组确认
+     */
+    @Scheduled(initialDelayString = "#{@seckillProperties.stream.trimInterval.toMillis()}",
+            fixedDelayString = "#{@seckillProperties.stream.trimInterval.toMillis()}")
+    public void trim() {
+        try {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(SECKILL_ORDER_STREAM))) {
+                return;
+            }
+            StreamInfo.XInfoGroups groups = stringRedisTemplate.opsForStream().groups(SECKILL_ORDER_STREAM);
+            if (groups.isEmpty()) {
+                // 还没有消费者组，消息都未被消费
+                return;
+            }
+            RecordId watermark = RecordId.of(System.currentTimeMillis() - config.getRetention().toMillis(), 0);
+            for (int i = 0; i < groups.size(); i++) {
+                StreamInfo.XInfoGroup group = groups.get(i);
+                watermark = min(watermark, RecordId.of(group.lastDeliveredId()));
+                PendingMessagesSummary pending = stringRedisTemplate.opsForStream()
+                        .pending(SECKILL_ORDER_STREAM, group.groupName());
+                if (pending.getTotalPendingMessages() > 0) {
+                    watermark = min(watermark, RecordId.of(pending.minMessageId()));
+                }
+            }
+            String minId = watermark.getValue();
+            Long trimmed = stringRedisTemplate.execute(TRIM_SCRIPT, Collections.singletonList(SECKILL_ORDER_STREAM), minId);
+            if (trimmed != null && trimmed > 0) {
+                log.debug("清理订单消息流, 水位线={}, 删除{}条", minId, trimmed);
+            }
+        } catch (Exception e) {
+            log.warn("清理订单消息流失败", e);
+        }
+    }
+
+    private Map<String, Object> doCollect() {
+        Long dlqSize = stringRedisTemplate.opsForStream().size(SECKILL_ORDER_DLQ);
+        deadLetters = dlqSize == null ? 0 : dlqSize;
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(SECKILL_ORDER_STREAM))) {
+            length = 0;
+            groupStats.values().forEach(GroupStats::clear);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("length", 0L);
+            result.put("deadLetters", deadLetters);
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        StreamInfo.XInfoStream info = stringRedisTemplate.opsForStream().info(SECKILL_ORDER_STREAM);
+        length = info.streamLength();
+        List<Map<String, Object>> groups = new ArrayList<>();
+        StreamInfo.XInfoGroups xInfoGroups = stringRedisTemplate.opsForStream().groups(SECKILL_ORDER_STREAM);
+        for (int i = 0; i < xInfoGroups.size(); i++) {
+            StreamInfo.XInfoGroup group = xInfoGroups.get(i);
+            GroupStats stats = groupStats.computeIfAbsent(group.groupName(), this::register);
+            PendingMessagesSummary pending = stringRedisTemplate.opsForStream()
+                    .pending(SECKILL_ORDER_STREAM, group.groupName());
+            stats.pending = pending.getTotalPendingMessages();
+            stats.oldestPendingMillis = stats.pending > 0 ? ageOf(pending.minMessageId(), now) : 0;
+            // 最后投递消息之后的第一条即为最早未投递的消息
+            List<MapRecord<String, Object, Object>> undelivered = stringRedisTemplate.opsForStream().range(SECKILL_ORDER_STREAM,
+                    Range.rightUnbounded(Range.Bound.exclusive(group.lastDeliveredId())), Limit.limit().count(1));
+            stats.lagMillis = undelivered == null || undelivered.isEmpty() ? 0 : ageOf(undelivered.get(0).getId().getValue(), now);
+
+            Map<String, Object> g = new LinkedHashMap<>();
+            g.put("name", group.groupName());
+            g.put("consumers", group.consumerCount());
+            g.put("lastDeliveredId", group.lastDeliveredId());
+            g.put("pending", stats.pending);
+            g.put("oldestPendingMillis", stats.oldestPendingMillis);
+            g.put("lagMillis", stats.lagMillis);
+            if (stats.pending > 0) {
+                g.put("pendingByConsumer", pending.getPendingMessagesPerConsumer());
+            }
+            groups.add(g);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("length", length);
+        result.put("firstEntryId", info.firstEntryId());
+        result.put("lastEntryId", info.lastEntryId());
+        result.put("groups", groups);
+        result.put("deadLetters", deadLetters);
+        result.put("collectedAt", now);
+        return result;
+    }
+
+    private GroupStats register(String group) {
+        GroupStats stats = new GroupStats();
+        Gauge.builder("hmdp.seckill.stream.pending", stats, s -> s.pending)
+                .description("已投递未确认的订单消息数").tag("group", group).register(meterRegistry);
+        Gauge.builder("hmdp.seckill.stream.pending.oldest.age", stats, s -> s.oldestPendingMillis / 1000.0)
+                .description("最早待确认消息的等待时间").baseUnit("seconds").tag("group", group).register(meterRegistry);
+        Gauge.builder("hmdp.seckill.stream.lag", stats, s -> s.lagMillis / 1000.0)
+                .description("最早未投递消息的等待时间").baseUnit("seconds").tag("group", group).register(meterRegistry);
+        return stats;
+    }
+
+    private static long ageOf(String recordId, long now) {
+        return Math.max(0, now - RecordId.of(recordId).getTimestamp());
+    }
+
+    private static RecordId min(RecordId a, RecordId b) {
+        if (a.getTimestamp() != b.getTimestamp()) {
+            return a.getTimestamp() < b.getTimestamp() ? a : b;
+        }
+        return a.getSequence() <= b.getSequence() ? a : b;
+    }
+
+    private static final class GroupStats {
+        volatile long pending;
+        volatile long oldestPendingMillis;
+        volatile long lagMillis;
+
+        void clear() {
+            pending = 0;
+            oldestPendingMillis = 0;
+            lagMillis = 0;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 进程内请求合并：同一个key同一时刻只有一个线程执行加载，其余线程等待并共享结果
+ */
+public class SingleFlight {
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param key     合并的key
+     * @param loader  加载逻辑，只会被抢到执行权的线程调用
+     * @param timeout 等待其他线程加载结果的最长时间
+     * @param fallback 等待超时后的兜底逻辑，由等待的线程自己执行
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader, long timeout, TimeUnit unit, Supplier<T> fallback) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inflight = calls.putIfAbsent(key, call);
+        if (inflight == null) {
+            // 当前线程负责加载
+            try {
+                T value = loader.get();
+                call.complete(value);
+                return value;
+            } catch (RuntimeException e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                calls.remove(key, call);
+            }
+        }
+        // 等待正在进行的加载
+        try {
+            return (T) inflight.get(timeout, unit);
+        } catch (TimeoutException e) {
+            // 加载线程迟迟未返回，不再等待，自行兜底
+            return fallback.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 正在加载中的key数量
+     */
+    public int inflight() {
+        return calls.size();
+    }
+}
@@ -0,0 +1,187 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.RuntimeUtil;
+import com.hmdp.config.IdProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.ID_WORKER_KEY;
+
+/**
+ * 本地生成id：31位时间戳(秒) + 1位模式位(固定为1) + 10位worker id + 21位序列号，与 RedisIdWorker 的 时间戳<<32 布局一致，
+ * incr/号段模式的序列号不会用到模式位，同一前缀切换模式后生成的id也不会重复。
+ * worker id 启动时从redis租用并定时续约，生成id时不访问redis；租约在本地过期后拒绝生成，避免与接手该id的节点重复。
+ * 停机时不删除租约，等其自然过期后才能被其他节点租用，避免重启后在同一秒内用同一个worker id从0重新分配序列号。
+ * 时钟回拨不超过 max-rollback 时沿用上次的秒数继续分配序列号，超过则拒绝生成。
+ * 续约使用独立线程，不与其他 @Scheduled 任务共用调度线程，避免被慢任务拖到租约过期
+ */
+@Slf4j
+@Component
+public class SnowflakeIdGenerator {
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 21;
+    /**
+     * 低32位的最高位，标记 snowflake 生成的id
+     */
+    static final long MODE_BIT = 1L << 31;
+    private static final int MAX_WORKERS = 1 << WORKER_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final DefaultRedisScript<Long> LEASE_SCRIPT;
+
+    static {
+        LEASE_SCRIPT = new DefaultRedisScript<>();
+        LEASE_SCRIPT.setLocation(new ClassPathResource("lease.lua"));
+        LEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final IdProperties idProperties;
+    private final String owner = NetUtil.getLocalHostName() + "-" + RuntimeUtil.getPid() + "-" + UUID.randomUUID().toString(true);
+    private volatile Lease lease;
+    private ScheduledExecutorService heartbeatExecutor;
+    /**
+     * 上次分配的秒数<<21 | 序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(StringRedisTemplate stringRedisTemplate, IdProperties idProperties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.idProperties = idProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 只有配置了 snowflake 的前缀时才租用 worker id
+        if (idProperties.getModes().containsValue(IdProperties.IdMode.SNOWFLAKE)) {
+            acquire();
+            long interval = idProperties.getSnowflake().getHeartbeat().toMillis();
+            heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("id-lease-", true));
+            heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long nextId() {
+        Lease current = lease;
+        if (current == null || System.currentTimeMillis() >= current.expireAt) {
+            throw new IllegalStateException("worker id租约已失效");
+        }
+        long maxRollback = idProperties.getSnowflake().getMaxRollback().getSeconds();
+        for (;;) {
+            long now = RedisIdWorker.currentSeconds();
+            long prev = state.get();
+            long last = prev >>> SEQUENCE_BITS;
+            long next;
+            if (now > last) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (last - now > maxRollback) {
+                    throw new IllegalStateException("时钟回拨" + (last - now) + "秒, 拒绝生成id");
+                }
+                // 同一秒内或小幅时钟回拨，沿用上次的秒数
+                if ((prev & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                    // 序列号用完，等待下一秒
+                    sleep();
+                    continue;
+                }
+                next = prev + 1;
+            }
+            if (state.compareAndSet(prev, next)) {
+                long timestamp = (next >>> SEQUENCE_BITS) - RedisIdWorker.BEGIN_TIME;
+                return timestamp << 32 | MODE_BIT | (long) current.workerId << SEQUENCE_BITS | next & SEQUENCE_MASK;
+            }
+        }
+    }
+
+    /**
+     * 续约，租约丢失时重新租用
+     */
+    public void heartbeat() {
+        Lease current = lease;
+        if (current == null) {
+            return;
+        }
+        long ttl = idProperties.getSnowflake().getLeaseTtl().toMillis();
+        long start = System.currentTimeMillis();
+        try {
+            Long renewed = stringRedisTemplate.execute(LEASE_SCRIPT,
+                    Collections.singletonList(ID_WORKER_KEY + current.workerId), owner, String.valueOf(ttl));
+            if (renewed != null && renewed == 1) {
+                lease = new Lease(current.workerId, start + ttl);
+                return;
+            }
+            log.error("worker id租约已丢失, 重新租用, workerId={}", current.workerId);
+            acquire();
+        } catch (Exception e) {
+            log.warn("worker id续约失败, workerId={}, 租约到期时间={}", current.workerId, current.expireAt, e);
+        }
+    }
+
+    /**
+     * 停止续约和生成，redis中的租约保留到过期
+     */
+    @PreDestroy
+    public void release() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+        Lease current = lease;
+        lease = null;
+        if (current != null) {
+            log.info("停止续约worker id, 租约过期后可被重新租用, workerId={}", current.workerId);
+        }
+    }
+
+    private void acquire() {
+        long ttl = idProperties.getSnowflake().getLeaseTtl().toMillis();
+        int offset = ThreadLocalRandom.current().nextInt(MAX_WORKERS);
+        for (int i = 0; i < MAX_WORKERS; i++) {
+            int workerId = (offset + i) % MAX_WORKERS;
+            long start = System.currentTimeMillis();
+            Boolean success = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(ID_WORKER_KEY + workerId, owner, ttl, TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(success)) {
+                lease = new Lease(workerId, start + ttl);
+                log.info("租用worker id成功, workerId={}, owner={}", workerId, owner);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有可用的worker id");
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待下一秒时被中断", e);
+        }
+    }
+
+    private static final class Lease {
+        final int workerId;
+        /**
+         * 本地计算的租约到期时间，从发起租用请求时开始计算，不晚于redis中的过期时间
+         */
+        final long expireAt;
+
+        Lease(int workerId, long expireAt) {
+            this.workerId = workerId;
+            this.expireAt = expireAt;
+        }
+    }
+}
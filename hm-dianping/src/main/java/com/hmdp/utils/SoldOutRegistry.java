@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * 本地售罄标记：秒杀券售罄后直接在本地拒绝，不再生成订单id和执行Lua脚本
+ * 标记通过Redis发布订阅同步到所有节点，补充库存时清除；
+ * 标记超过 sold-out-recheck 后失效，由下一次请求重新执行脚本确认，防止漏收清除消息后一直拒绝
+ */
+@Slf4j
+@Component
+public class SoldOutRegistry {
+    private static final String MARK = "1";
+    private static final String RESET = "0";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    /**
+     * 券id -> 标记时间
+     */
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    public boolean isSoldOut(Long voucherId) {
+        Long markedAt = soldOut.get(voucherId);
+        if (markedAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - markedAt < seckillProperties.getSoldOutRecheck().toMillis()) {
+            return true;
+        }
+        soldOut.remove(voucherId, markedAt);
+        return false;
+    }
+
+    /**
+     * 标记售罄并通知其他节点
+     */
+    public void markSoldOut(Long voucherId) {
+        if (soldOut.put(voucherId, System.currentTimeMillis()) == null) {
+            log.info("秒杀券{}已售罄", voucherId);
+        }
+        publish(MARK, voucherId);
+    }
+
+    /**
+     * 补充库存后清除标记并通知其他节点
+     */
+    public void reset(Long voucherId) {
+        soldOut.remove(voucherId);
+        publish(RESET, voucherId);
+    }
+
+    private void publish(String action, Long voucherId) {
+        try {
+            stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, action + "|" + voucherId);
+        } catch (Exception e) {
+            log.warn("发布售罄消息失败, voucherId={}", voucherId, e);
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int idx = body.indexOf('|');
+        if (idx < 0) {
+            return;
+        }
+        Long voucherId = Long.valueOf(body.substring(idx + 1));
+        if (MARK.equals(body.substring(0, idx))) {
+            soldOut.putIfAbsent(voucherId, System.currentTimeMillis());
+        } else {
+            soldOut.remove(voucherId);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.hmdp.utils;
+
+/**
+ * 进程内令牌桶
+ */
+public class TokenBucket {
+    private final double rate;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param rate     每秒生成的令牌数
+     * @param capacity 桶容量，允许的突发请求数
+     */
+    public TokenBucket(double rate, double capacity) {
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    /**
+     * 获取一个令牌
+     *
+     * @return 0表示获取成功，否则为需要等待的毫秒数
+     */
+    public synchronized long tryAcquire() {
+        long now = System.currentTimeMillis();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1000);
+        lastRefill = now;
+        if (tokens < 1) {
+            return (long) Math.ceil((1 - tokens) * 1000 / rate);
+        }
+        tokens -= 1;
+        return 0;
+    }
+}
@@ -0,0 +1,14 @@
+-- 把重试次数耗尽的订单消息移入死信队列，并在原消费者组中确认
+-- KEYS[1]: 订单消息流 KEYS[2]: 死信队列
+-- 参数: 1.消费者组 2.原消息id 3.用户ID 4.优惠券ID 5.订单ID 6.投递次数 7.失败原因
+-- 死信不限制长度，只在重新投递后删除，长度通过 hmdp.seckill.dlq.length 监控
+-- 返回: 1 已移入，0 消息已被确认(其他消费者已处理或已移入)
+
+-- 先确认，多个消费者同时移入时只有一个成功
+if(redis.call('xack', KEYS[1], ARGV[1], ARGV[2]) == 0) then
+    return 0
+end
+redis.call('xadd', KEYS[2], '*',
+        'userId', ARGV[3], 'voucherId', ARGV[4], 'id', ARGV[5],
+        'sourceId', ARGV[2], 'deliveries', ARGV[6], 'reason', ARGV[7])
+return 1
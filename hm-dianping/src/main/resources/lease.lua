@@ -0,0 +1,10 @@
+-- 续约 worker id 租约，只处理自己持有的租约
+-- KEYS[1]: 租约key
+-- 参数: 1.持有者标识 2.续约毫秒数
+-- 返回: 1:成功 0:租约已不属于自己
+
+if(redis.call('get', KEYS[1]) ~= ARGV[1]) then
+    return 0
+end
+redis.call('pexpire', KEYS[1], ARGV[2])
+return 1
@@ -0,0 +1,25 @@
+-- 令牌桶限流
+-- KEYS[1]: 令牌桶key
+-- 参数: 1.每秒生成的令牌数 2.桶容量
+-- 返回: 0:获取成功 大于0:需要等待的毫秒数
+
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+-- 使用redis服务器时间，避免各节点时钟不一致
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1]) or capacity
+local ts = tonumber(bucket[2]) or now
+-- 按流逝的时间补充令牌
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+local wait = 0
+if(tokens < 1) then
+    wait = math.ceil((1 - tokens) * 1000 / rate)
+else
+    tokens = tokens - 1
+end
+redis.call('hset', KEYS[1], 'tokens', tokens, 'ts', now)
+-- 桶装满所需时间后自动删除
+redis.call('pexpire', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return wait
@@ -0,0 +1,22 @@
+-- 把死信消息重新投递到订单消息流，并从死信队列删除
+-- KEYS[1]: 死信队列 KEYS[2]: 订单消息流
+-- 参数: 1.死信消息id
+-- 返回: 新消息id，死信消息不存在时返回nil
+
+local entries = redis.call('xrange', KEYS[1], ARGV[1], ARGV[1])
+if(#entries == 0) then
+    return nil
+end
+-- 只保留原订单字段
+local fields = entries[1][2]
+local message = {}
+for i = 1, #fields, 2 do
+    local field = fields[i]
+    if(field == 'userId' or field == 'voucherId' or field == 'id') then
+        table.insert(message, field)
+        table.insert(message, fields[i + 1])
+    end
+end
+local id = redis.call('xadd', KEYS[2], '*', unpack(message))
+redis.call('xdel', KEYS[1], ARGV[1])
+return id
@@ -1,26 +1,48 @@
 -- 秒杀脚本
--- 参数: 1.优惠券ID 2.用户ID
+-- KEYS: 1.库存key 2.下单用户key(集合，位图模式下为用户所在分块) 3.订单消息流 4.订单状态key
+-- 分片模式下 KEYS[1]、KEYS[2] 为用户所在分片的key，带相同的hash tag
+-- 参数: 1.优惠券ID 2.用户ID 3.订单ID 4.位图偏移(为空时使用集合) 5.订单状态过期秒数(0不记录状态)
+--       6.是否已从其他分片预扣库存(1表示已预扣，不再检查和扣减KEYS[1])
 -- 返回: 0:成功 1:库存不足 2:重复下单
 
 -- 接收参数
 local voucherId = ARGV[1]
 local userId = ARGV[2]
 local orderId = ARGV[3]
--- 定义键名
-local stockKey = 'seckill:stock:' .. voucherId
-local orderKey = 'seckill:order:' .. voucherId
--- 1. 判断用户是否重复下单
-if(tonumber(redis.call('get',stockKey)) <= 0) then
+local offset = ARGV[4]
+local bitmap = offset ~= ''
+local reserved = ARGV[6] == '1'
+-- 定义键名，由调用方按去重方式和分片计算后传入
+local stockKey = KEYS[1]
+local orderKey = KEYS[2]
+-- 1. 判断库存是否充足
+if(not reserved and (tonumber(redis.call('get',stockKey)) or 0) <= 0) then
     return 1
 end
-if(redis.call('sismember',orderKey,userId) == 1) then
+-- 2. 判断用户是否重复下单
+if(bitmap) then
+    if(redis.call('getbit', orderKey, offset) == 1) then
+        return 2
+    end
+elseif(redis.call('sismember', orderKey, userId) == 1) then
     return 2
 end
 --扣库存
-redis.call('incrby',stockKey,-1)
+if(not reserved) then
+    redis.call('incrby',stockKey,-1)
+end
 -- 4. 记录用户下单
-redis.call('SADD', orderKey, userId)
+if(bitmap) then
+    redis.call('setbit', orderKey, offset, 1)
+else
+    redis.call('SADD', orderKey, userId)
+end
 --发送消息到消息队列
-redis.call('xadd','stream.orders','*','userId',userId,'voucherId',voucherId,'id',orderId)
+redis.call('xadd',KEYS[3],'*','userId',userId,'voucherId',voucherId,'id',orderId)
+-- 记录订单处理状态，消费者落库后更新
+if(tonumber(ARGV[5]) > 0) then
+    redis.call('hset', KEYS[4], 'status', 'pending', 'userId', userId, 'voucherId', voucherId)
+    redis.call('expire', KEYS[4], ARGV[5])
+end
 -- 5. 返回成功
-return 0
\ No newline at end of file
+return 0
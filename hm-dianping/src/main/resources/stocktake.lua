@@ -0,0 +1,8 @@
+-- 从一个库存分片预扣一个库存，用户所在分片售罄时使用
+-- KEYS: 1.分片库存key
+-- 返回: 1:预扣成功 0:该分片库存不足
+if((tonumber(redis.call('get', KEYS[1])) or 0) <= 0) then
+    return 0
+end
+redis.call('incrby', KEYS[1], -1)
+return 1
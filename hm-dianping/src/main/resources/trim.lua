@@ -0,0 +1,6 @@
+-- 按水位线清理消息流，删除id小于水位线的消息(近似，按整个宏节点删除)
+-- KEYS[1]: 消息流key
+-- 参数: 1.水位线消息id
+-- 返回: 删除的消息数
+
+return redis.call('xtrim', KEYS[1], 'MINID', '~', ARGV[1])
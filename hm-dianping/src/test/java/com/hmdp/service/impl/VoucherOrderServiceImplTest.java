@@ -0,0 +1,127 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.utils.SeckillDeadLetterQueue;
+import com.hmdp.utils.SeckillOrderTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VoucherOrderServiceImplTest {
+
+    private SeckillDeadLetterQueue deadLetterQueue;
+    private VoucherOrderServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        deadLetterQueue = mock(SeckillDeadLetterQueue.class);
+        service = new VoucherOrderServiceImpl();
+        ReflectionTestUtils.setField(service, "seckillProperties", new SeckillProperties());
+        ReflectionTestUtils.setField(service, "seckillDeadLetterQueue", deadLetterQueue);
+    }
+
+    private static MapRecord<String, String, String> record(String id) {
+        return record(id, 100L, 7L);
+    }
+
+    private static MapRecord<String, String, String> record(String id, long orderId, long userId) {
+        Map<String, String> value = new HashMap<>();
+        value.put("id", String.valueOf(orderId));
+        value.put("userId", String.valueOf(userId));
+        value.put("voucherId", "3");
+        return StreamRecords.newRecord().in(SECKILL_ORDER_STREAM).withId(RecordId.of(id)).ofMap(value);
+    }
+
+    private static List<Long> ids(List<VoucherOrder> orders) {
+        return orders.stream().map(VoucherOrder::getId).collect(Collectors.toList());
+    }
+
+    private List<MapRecord<String, ?, ?>> retryable(List<MapRecord<String, String, String>> records,
+                                                    Map<RecordId, Long> deliveryCounts) {
+        return ReflectionTestUtils.invokeMethod(service, "retryable", records, deliveryCounts);
+    }
+
+    @Test
+    void keepsRecordsWithinMaxDeliveries() {
+        List<MapRecord<String, String, String>> records = Arrays.asList(record("1-0"), record("2-0"));
+        Map<RecordId, Long> counts = new HashMap<>();
+        counts.put(RecordId.of("1-0"), 5L);
+
+        // 查不到投递次数的消息按1次处理
+        assertEquals(2, retryable(records, counts).size());
+        verifyNoInteractions(deadLetterQueue);
+    }
+
+    @Test
+    void deadLettersRecordsOverMaxDeliveries() {
+        MapRecord<String, String, String> poison = record("2-0");
+        List<MapRecord<String, String, String>> records = Arrays.asList(record("1-0"), poison);
+        Map<RecordId, Long> counts = new HashMap<>();
+        counts.put(RecordId.of("1-0"), 2L);
+        counts.put(RecordId.of("2-0"), 6L);
+
+        List<MapRecord<String, ?, ?>> retryable = retryable(records, counts);
+
+        assertEquals(1, retryable.size());
+        assertEquals(RecordId.of("1-0"), retryable.get(0).getId());
+        verify(deadLetterQueue).deadLetter("g1", poison, 6L, "unknown");
+    }
+
+    @Test
+    void deadLetterFailureDoesNotBlockBatch() {
+        when(deadLetterQueue.deadLetter(anyString(), any(), anyLong(), anyString()))
+                .thenThrow(new IllegalStateException("redis down"));
+        List<MapRecord<String, String, String>> records = Arrays.asList(record("1-0"), record("2-0"), record("3-0"));
+        Map<RecordId, Long> counts = new HashMap<>();
+        counts.put(RecordId.of("1-0"), 9L);
+        counts.put(RecordId.of("2-0"), 9L);
+
+        // 移入失败的消息留在pending-list中，同批其他消息照常处理
+        List<MapRecord<String, ?, ?>> retryable = retryable(records, counts);
+
+        assertEquals(1, retryable.size());
+        assertEquals(RecordId.of("3-0"), retryable.get(0).getId());
+        verify(deadLetterQueue, times(2)).deadLetter(anyString(), any(), anyLong(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void marksOnlyPersistedOrdersAndRejectsDuplicatePurchases() {
+        IVoucherOrderService proxy = mock(IVoucherOrderService.class);
+        SeckillOrderTracker tracker = mock(SeckillOrderTracker.class);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(mock(StreamOperations.class));
+        ReflectionTestUtils.setField(service, "proxy", proxy);
+        ReflectionTestUtils.setField(service, "seckillOrderTracker", tracker);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", stringRedisTemplate);
+        // 订单101的用户已有该券的其他订单，未落库
+        when(proxy.createVoucherOrders(anyList())).thenAnswer(inv -> inv.<List<VoucherOrder>>getArgument(0).stream()
+                .filter(order -> order.getId() == 100L).collect(Collectors.toList()));
+
+        ReflectionTestUtils.invokeMethod(service, "handleRecords",
+                Arrays.asList(record("1-0", 100L, 7L), record("2-0", 101L, 8L)));
+
+        ArgumentCaptor<List<VoucherOrder>> persisted = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<VoucherOrder>> rejected = ArgumentCaptor.forClass(List.class);
+        verify(tracker).markPersisted(persisted.capture());
+        verify(tracker).markRejected(rejected.capture(), eq("重复下单"));
+        assertEquals(Collections.singletonList(100L), ids(persisted.getValue()));
+        assertEquals(Collections.singletonList(101L), ids(rejected.getValue()));
+    }
+}
@@ -0,0 +1,84 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.mapper.BlogMapper;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheBloomFilterTest {
+
+    private CacheProperties properties;
+    private ShopMapper shopMapper;
+    private CacheBloomFilter cacheBloomFilter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CacheProperties();
+        shopMapper = mock(ShopMapper.class);
+        cacheBloomFilter = new CacheBloomFilter();
+        ReflectionTestUtils.setField(cacheBloomFilter, "cacheProperties", properties);
+        ReflectionTestUtils.setField(cacheBloomFilter, "stringRedisTemplate", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(cacheBloomFilter, "listenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(cacheBloomFilter, "shopMapper", shopMapper);
+        ReflectionTestUtils.setField(cacheBloomFilter, "blogMapper", mock(BlogMapper.class));
+        ReflectionTestUtils.setField(cacheBloomFilter, "userMapper", mock(UserMapper.class));
+        ReflectionTestUtils.invokeMethod(cacheBloomFilter, "init");
+    }
+
+    private void shopIds(Long... ids) {
+        when(shopMapper.selectCount(any())).thenReturn(ids.length);
+        List<Object> rows = new ArrayList<>(Arrays.asList(ids));
+        when(shopMapper.selectObjs(any())).thenReturn(rows, Collections.emptyList());
+    }
+
+    @Test
+    void idsAboveLoadedMaxFallThrough() {
+        shopIds(1L, 2L, 3L, 100L);
+        cacheBloomFilter.load();
+
+        assertTrue(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 3L));
+        assertFalse(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 50L));
+        // 加载后新增、本节点未收到广播的id交给数据库判断
+        assertTrue(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 101L));
+
+        cacheBloomFilter.put(CACHE_SHOP_KEY, 50L);
+        assertTrue(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 50L));
+    }
+
+    @Test
+    void rebuildPicksUpNewIds() {
+        shopIds(1L, 2L, 3L, 100L);
+        cacheBloomFilter.load();
+        assertFalse(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 60L));
+
+        properties.getBloom().setRebuildInterval(Duration.ZERO);
+        shopIds(1L, 2L, 3L, 60L, 100L, 200L);
+        cacheBloomFilter.rebuildIfNeeded();
+
+        assertTrue(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 60L));
+        assertFalse(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 150L));
+        assertEquals(200L, cacheBloomFilter.stats().get(CACHE_SHOP_KEY).get("maxId"));
+    }
+
+    @Test
+    void allowsEverythingBeforeLoad() {
+        assertTrue(cacheBloomFilter.mightContain(CACHE_SHOP_KEY, 50L));
+    }
+}
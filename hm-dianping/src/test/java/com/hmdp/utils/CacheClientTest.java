@@ -0,0 +1,166 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheClientTest {
+
+    private final Map<String, byte[]> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger dbLoads = new AtomicInteger();
+    private final Function<Long, Shop> dbFunction = id -> {
+        dbLoads.incrementAndGet();
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("shop-" + id);
+        return shop;
+    };
+
+    private CacheProperties properties;
+    private ValueOperations<String, String> stringOps;
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+    private SimpleMeterRegistry registry;
+    private CacheRebuildExecutor rebuildExecutor;
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new CacheProperties();
+        properties.getBloom().setEnabled(false);
+        properties.setMutexWait(Duration.ofMillis(200));
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        stringOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(stringOps);
+        when(stringOps.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        cacheRedisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, byte[]> cacheOps = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(cacheOps);
+        when(cacheOps.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> redis.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(cacheOps).set(anyString(), any(byte[].class), anyLong(), any(TimeUnit.class));
+        when(cacheOps.multiGet(anyCollection())).thenAnswer(inv -> inv.<Collection<String>>getArgument(0).stream()
+                .map(redis::get).collect(Collectors.toList()));
+        registry = new SimpleMeterRegistry();
+        build(stringRedisTemplate, cacheRedisTemplate);
+    }
+
+    private void build(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, byte[]> cacheRedisTemplate) {
+        CacheMetrics metrics = new CacheMetrics(registry);
+        rebuildExecutor = new CacheRebuildExecutor(properties, metrics);
+        cacheClient = new CacheClient(stringRedisTemplate, cacheRedisTemplate,
+                mock(RedisMessageListenerContainer.class), new CacheBloomFilter(), new HotKeyDetector(properties),
+                metrics, rebuildExecutor, properties);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        rebuildExecutor.shutdown();
+    }
+
+    private Shop query(long id) {
+        return cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, id, Shop.class, dbFunction, 30L, TimeUnit.MINUTES);
+    }
+
+    @Test
+    void plainJsonValueIsReloadedInLogicalFormat() {
+        // 旧的 queryWithPassThough 写入的普通JSON
+        redis.put(CACHE_SHOP_KEY + 1, new JsonCacheCodec().encode(dbFunction.apply(1L)));
+        dbLoads.set(0);
+
+        Shop shop = query(1L);
+
+        assertNotNull(shop);
+        assertEquals("shop-1", shop.getName());
+        assertEquals(1, dbLoads.get());
+        assertTrue(new JsonCacheCodec().expireAt(redis.get(CACHE_SHOP_KEY + 1)) > System.currentTimeMillis());
+        // 覆盖后直接命中
+        assertEquals("shop-1", query(1L).getName());
+        assertEquals(1, dbLoads.get());
+    }
+
+    @Test
+    void plainBinaryValueWithoutExpireIsReloaded() {
+        properties.setCodec(CacheProperties.Codec.BINARY);
+        setUp();
+        redis.put(CACHE_SHOP_KEY + 2, new BinaryCacheCodec().encode(dbFunction.apply(2L)));
+        dbLoads.set(0);
+
+        assertEquals("shop-2", query(2L).getName());
+        assertEquals(1, dbLoads.get());
+        assertTrue(new BinaryCacheCodec().expireAt(redis.get(CACHE_SHOP_KEY + 2)) > 0);
+    }
+
+    @Test
+    void waitingForLockIgnoresOldFormatValue() {
+        // 锁一直被其他节点持有，等待期间读到的旧格式数据不能当作结果
+        when(stringOps.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+        redis.put(CACHE_SHOP_KEY + 3, new JsonCacheCodec().encode(dbFunction.apply(3L)));
+        dbLoads.set(0);
+
+        assertEquals("shop-3", query(3L).getName());
+        assertEquals(1, dbLoads.get());
+    }
+
+    @Test
+    void nullValueIsStillANullHit() {
+        redis.put(CACHE_SHOP_KEY + 4, new byte[0]);
+
+        assertNull(query(4L));
+        assertEquals(0, dbLoads.get());
+    }
+
+    @Test
+    void lockMetricIsTaggedWithCachePrefix() {
+        query(5L);
+
+        assertNotNull(registry.find("hmdp.cache.lock").tag("prefix", CACHE_SHOP_KEY).counter());
+        assertNull(registry.find("hmdp.cache.lock").tag("prefix", LOCK_SHOP_KEY).counter());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchWriteKeepsSubSecondTtl() {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(cacheRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            inv.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return null;
+        });
+
+        cacheClient.queryBatchWithPassThrough(CACHE_SHOP_KEY, Arrays.asList(6L, 7L), Shop.class,
+                ids -> ids.stream().filter(id -> id == 6L).collect(Collectors.toMap(id -> id, dbFunction)),
+                500L, TimeUnit.MILLISECONDS);
+
+        verify(connection).pSetEx(eq((CACHE_SHOP_KEY + 6).getBytes(StandardCharsets.UTF_8)), eq(500L), any(byte[].class));
+        verify(connection).pSetEx(eq((CACHE_SHOP_KEY + 7).getBytes(StandardCharsets.UTF_8)),
+                eq(TimeUnit.MINUTES.toMillis(RedisConstants.CACHE_NULL_TTL)), eq(new byte[0]));
+        verify(connection, never()).setEx(any(byte[].class), anyLong(), any(byte[].class));
+    }
+}
@@ -0,0 +1,109 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCodecTest {
+
+    private final BinaryCacheCodec binary = new BinaryCacheCodec();
+    private final JsonCacheCodec json = new JsonCacheCodec();
+
+    private static Shop shop() {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        shop.setTypeId(1L);
+        shop.setX(120.149192);
+        shop.setY(30.316078);
+        shop.setAvgPrice(80L);
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        return shop;
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        byte[] bytes = binary.encode(shop());
+        assertTrue(binary.supports(bytes));
+        assertEquals(shop(), binary.decode(bytes, Shop.class));
+        assertEquals(0, binary.expireAt(bytes));
+    }
+
+    @Test
+    void binaryKeepsExpireAndDeltaInHeader() {
+        long expireAt = System.currentTimeMillis() + 60_000;
+        byte[] bytes = binary.encode(shop(), expireAt, 35);
+
+        assertEquals(expireAt, binary.expireAt(bytes));
+        CacheEntry<Shop> entry = binary.decodeWithExpire(bytes, Shop.class);
+        assertEquals(shop(), entry.getData());
+        assertEquals(expireAt, entry.getExpireAt());
+        assertEquals(35, entry.getDelta());
+    }
+
+    @Test
+    void binaryReadsVersion1WithoutDelta() {
+        long expireAt = 1_700_000_000_000L;
+        byte[] v2 = binary.encode(shop(), expireAt, 99);
+        // 版本1: [魔数][版本][过期时间 8字节][数据]，没有重建耗时字段
+        byte[] payload = Arrays.copyOfRange(v2, BinaryCacheCodec.HEADER_LENGTH, v2.length);
+        byte[] v1 = ByteBuffer.allocate(10 + payload.length)
+                .put(BinaryCacheCodec.MAGIC).put((byte) 1).putLong(expireAt).put(payload)
+                .array();
+
+        assertTrue(binary.supports(v1));
+        CacheEntry<Shop> entry = binary.decodeWithExpire(v1, Shop.class);
+        assertEquals(shop(), entry.getData());
+        assertEquals(expireAt, entry.getExpireAt());
+        assertEquals(0, entry.getDelta());
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() {
+        assertTrue(binary.encode(shop()).length < json.encode(shop()).length);
+    }
+
+    @Test
+    void binaryDoesNotClaimJson() {
+        assertFalse(binary.supports(json.encode(shop())));
+        assertFalse(binary.supports(new byte[]{BinaryCacheCodec.MAGIC}));
+        assertTrue(json.supports(json.encode(shop())));
+    }
+
+    @Test
+    void jsonRoundTripWithExpire() {
+        long expireAt = LocalDateTime.of(2030, 1, 1, 0, 0)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        byte[] bytes = json.encode(shop(), expireAt, 12);
+
+        CacheEntry<Shop> entry = json.decodeWithExpire(bytes, Shop.class);
+        assertEquals(shop().getName(), entry.getData().getName());
+        assertEquals(shop().getCreateTime(), entry.getData().getCreateTime());
+        assertEquals(expireAt, entry.getExpireAt());
+        assertEquals(12, entry.getDelta());
+        assertEquals(expireAt, json.expireAt(bytes));
+    }
+
+    @Test
+    void jsonReadsLegacyRedisData() {
+        // 历史缓存: RedisData 没有 delta 字段
+        RedisData redisData = new RedisData();
+        redisData.setData(shop());
+        LocalDateTime expireTime = LocalDateTime.of(2030, 1, 1, 0, 0);
+        redisData.setExpireTime(expireTime);
+        byte[] bytes = JSONUtil.toJsonStr(redisData).getBytes(StandardCharsets.UTF_8);
+
+        CacheEntry<Shop> entry = json.decodeWithExpire(bytes, Shop.class);
+        assertEquals(shop().getId(), entry.getData().getId());
+        assertEquals(expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), entry.getExpireAt());
+        assertEquals(0, entry.getDelta());
+    }
+}
@@ -0,0 +1,78 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimateNeverUnderCounts() {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        // 写入远多于宽度的key，制造哈希冲突
+        for (int i = 0; i < 2000; i++) {
+            sketch.add("key:" + i, i % 7 + 1);
+        }
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(sketch.estimate("key:" + i) >= i % 7 + 1);
+        }
+    }
+
+    @Test
+    void estimateIsExactWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(4, 4096);
+        sketch.add("cache:shop:1", 100);
+        sketch.add("cache:shop:2", 3);
+        assertEquals(100, sketch.estimate("cache:shop:1"));
+        assertEquals(3, sketch.estimate("cache:shop:2"));
+        assertEquals(0, sketch.estimate("cache:shop:3"));
+    }
+
+    @Test
+    void clearResetsCounters() {
+        CountMinSketch sketch = new CountMinSketch(2, 64);
+        sketch.add("a", 5);
+        sketch.clear();
+        assertEquals(0, sketch.estimate("a"));
+    }
+
+    @Test
+    void rejectsInvalidShape() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, 64));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(7, 64));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(4, 100));
+    }
+
+    @Test
+    void detectorPromotesKeysAboveThreshold() {
+        CacheProperties properties = new CacheProperties();
+        CacheProperties.HotKey hotKey = properties.getHotKey();
+        hotKey.setEnabled(true);
+        hotKey.setSampleRate(1.0);
+        hotKey.setThreshold(50);
+        hotKey.setWindow(Duration.ofMinutes(10));
+        HotKeyDetector detector = new HotKeyDetector(properties);
+
+        for (int i = 0; i < 49; i++) {
+            assertFalse(detector.record("cache:shop:1"));
+        }
+        assertTrue(detector.record("cache:shop:1"));
+        assertTrue(detector.isHot("cache:shop:1"));
+        assertFalse(detector.isHot("cache:shop:2"));
+        assertEquals(50, detector.estimate("cache:shop:1"));
+    }
+
+    @Test
+    void disabledDetectorNeverPromotes() {
+        CacheProperties properties = new CacheProperties();
+        properties.getHotKey().setSampleRate(1.0);
+        properties.getHotKey().setThreshold(1);
+        HotKeyDetector detector = new HotKeyDetector(properties);
+
+        assertFalse(detector.record("cache:shop:1"));
+        assertFalse(detector.isHot("cache:shop:1"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.IdProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RedisIdWorkerTest {
+
+    private final AtomicLong counter = new AtomicLong();
+    private ValueOperations<String, String> valueOps;
+    private IdProperties idProperties;
+    private RedisIdWorker idWorker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        // INCR / INCRBY 共用一个计数器
+        when(valueOps.increment(anyString())).thenAnswer(inv -> counter.incrementAndGet());
+        when(valueOps.increment(anyString(), anyLong())).thenAnswer(inv -> counter.addAndGet(inv.getArgument(1)));
+        idProperties = new IdProperties();
+        idWorker = new RedisIdWorker(redisTemplate, idProperties, mock(SnowflakeIdGenerator.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        idWorker.shutdown();
+    }
+
+    @Test
+    void incrModeIsDefault() {
+        long first = idWorker.nextId("order");
+        long second = idWorker.nextId("order");
+        assertEquals(1, first & 0xFFFFFFFFL);
+        assertEquals(2, second & 0xFFFFFFFFL);
+        verify(valueOps, times(2)).increment(anyString());
+        verify(valueOps, never()).increment(anyString(), anyLong());
+    }
+
+    @Test
+    void segmentModeReservesStepPerRoundTrip() {
+        idProperties.getModes().put("order", IdProperties.IdMode.SEGMENT);
+        idProperties.getSegment().setStep(100);
+        idProperties.getSegment().setLowWater(0);
+
+        long previous = 0;
+        for (int i = 0; i < 250; i++) {
+            long id = idWorker.nextId("order");
+            assertTrue(id > previous);
+            previous = id;
+        }
+        // 250个id用到3个号段，号段末尾的预取最多多申请一次
+        verify(valueOps, atLeast(3)).increment(anyString(), eq(100L));
+        verify(valueOps, atMost(4)).increment(anyString(), eq(100L));
+        verify(valueOps, never()).increment(anyString());
+    }
+
+    @Test
+    void segmentModeIdsAreUniqueAcrossThreads() throws Exception {
+        idProperties.getModes().put("order", IdProperties.IdMode.SEGMENT);
+        idProperties.getSegment().setStep(64);
+        idProperties.getSegment().setLowWater(0.5);
+
+        int threads = 8;
+        int perThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<Long> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(idWorker.nextId("order"));
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+        Set<Long> all = ConcurrentHashMap.newKeySet();
+        for (Future<List<Long>> future : futures) {
+            List<Long> ids = future.get(30, TimeUnit.SECONDS);
+            all.addAll(ids);
+        }
+        executor.shutdown();
+        assertEquals(threads * perThread, all.size());
+        // 号段只会预留，不会被两个线程重复分配，序列号不超过已预留的范围
+        for (long id : all) {
+            assertTrue((id & 0xFFFFFFFFL) <= counter.get());
+        }
+    }
+
+    @Test
+    void sequenceNeverReachesSnowflakeModeBit() {
+        counter.set(SnowflakeIdGenerator.MODE_BIT - 2);
+        long last = idWorker.nextId("order");
+        assertEquals(0, last & SnowflakeIdGenerator.MODE_BIT);
+        // 序列号用到模式位时拒绝生成，避免与 snowflake 的id重复
+        assertThrows(IllegalStateException.class, () -> idWorker.nextId("order"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.VoucherOrder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_DLQ;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SeckillDeadLetterQueueTest {
+
+    private StringRedisTemplate redisTemplate;
+    private SeckillOrderTracker tracker;
+    private SeckillDeadLetterQueue deadLetterQueue;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        tracker = mock(SeckillOrderTracker.class);
+        deadLetterQueue = new SeckillDeadLetterQueue(redisTemplate, tracker, new SimpleMeterRegistry());
+    }
+
+    private static MapRecord<String, String, String> record(String id, Map<String, String> value) {
+        return StreamRecords.newRecord().in(SECKILL_ORDER_STREAM).withId(RecordId.of(id)).ofMap(value);
+    }
+
+    private static Map<String, String> order(String id, String userId, String voucherId) {
+        Map<String, String> value = new HashMap<>();
+        value.put("id", id);
+        value.put("userId", userId);
+        value.put("voucherId", voucherId);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] scriptArgs() {
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).execute(any(RedisScript.class),
+                eq(Arrays.asList(SECKILL_ORDER_STREAM, SECKILL_ORDER_DLQ)), args.capture());
+        return args.getAllValues().toArray();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void movesOrderAndMarksFailed() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenReturn(1L);
+
+        assertTrue(deadLetterQueue.deadLetter("g1", record("1-0", order("100", "7", "3")), 6, "db down"));
+
+        Object[] args = scriptArgs();
+        // 不传长度限制，死信不会被挤掉
+        assertEquals(7, args.length);
+        assertEquals("g1", args[0]);
+        assertEquals("1-0", args[1]);
+        assertEquals("7", args[2]);
+        assertEquals("3", args[3]);
+        assertEquals("100", args[4]);
+        assertEquals("6", args[5]);
+        assertEquals("db down", args[6]);
+        ArgumentCaptor<VoucherOrder> failed = ArgumentCaptor.forClass(VoucherOrder.class);
+        verify(tracker).markFailed(failed.capture(), eq("db down"));
+        assertEquals(100L, failed.getValue().getId());
+        assertEquals(7L, failed.getValue().getUserId());
+        assertEquals(3L, failed.getValue().getVoucherId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void movesMalformedRecordWithRawFields() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenReturn(1L);
+        Map<String, String> value = new HashMap<>();
+        value.put("userId", "abc");
+        value.put("voucherId", "3");
+
+        assertTrue(deadLetterQueue.deadLetter("g1", record("2-0", value), 6, "消息格式错误"));
+
+        Object[] args = scriptArgs();
+        // 字段按原值复制，缺失的字段为空字符串
+        assertEquals("abc", args[2]);
+        assertEquals("3", args[3]);
+        assertEquals("", args[4]);
+        verify(tracker, never()).markFailed(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void skipsAlreadyAcknowledgedRecord() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenReturn(0L);
+
+        assertFalse(deadLetterQueue.deadLetter("g1", record("3-0", order("100", "7", "3")), 6, "db down"));
+        verify(tracker, never()).markFailed(any(), any());
+    }
+}
@@ -0,0 +1,38 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SeckillStockReconcilerTest {
+
+    @Test
+    void consistentWhenAllOrdersPersistedAndWrittenBack() {
+        // 总量100，卖出30，30单已落库且扣减已回写
+        assertEquals(0, SeckillStockReconciler.drift(70, 0, 70, 30, 30));
+    }
+
+    @Test
+    void pendingDeltaAndUnconsumedOrdersAreNotDrift() {
+        // 卖出30，落库25单，其中5单的扣减还在本地等待回写，5单还在消息队列中
+        assertEquals(0, SeckillStockReconciler.drift(80, 5, 70, 30, 25));
+    }
+
+    @Test
+    void lostDecrementShowsAsPositiveDrift() {
+        // 30单已落库，但只回写了27个扣减
+        assertEquals(3, SeckillStockReconciler.drift(73, 0, 70, 30, 30));
+    }
+
+    @Test
+    void doubleDecrementShowsAsNegativeDrift() {
+        // 重复回写使数据库库存少了2
+        assertEquals(-2, SeckillStockReconciler.drift(68, 0, 70, 30, 30));
+    }
+
+    @Test
+    void replenishedStockCountsOnBothSides() {
+        // 补充10个库存后Redis剩余和数据库库存同时增加
+        assertEquals(0, SeckillStockReconciler.drift(80, 0, 80, 30, 30));
+    }
+}
@@ -0,0 +1,107 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_PENDING_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_PENDING_WRITERS_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SeckillStockWriterTest {
+    private static final Long VOUCHER_ID = 7L;
+
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, Double> writers = new ConcurrentHashMap<>();
+    private StringRedisTemplate stringRedisTemplate;
+    private SeckillProperties properties;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOps);
+        when(hashOps.increment(anyString(), any(), anyLong())).thenAnswer(inv -> {
+            Map<Object, Object> hash = hashes.computeIfAbsent(inv.getArgument(0), k -> new ConcurrentHashMap<>());
+            long value = Long.parseLong(hash.getOrDefault(inv.getArgument(1), "0").toString()) + inv.<Long>getArgument(2);
+            hash.put(inv.getArgument(1), String.valueOf(value));
+            return value;
+        });
+        when(hashOps.entries(anyString())).thenAnswer(inv -> hashes.getOrDefault(inv.<String>getArgument(0), new ConcurrentHashMap<>()));
+        when(hashOps.delete(anyString(), any())).thenAnswer(inv -> {
+            hashes.getOrDefault(inv.<String>getArgument(0), new ConcurrentHashMap<>()).remove(inv.getArgument(1));
+            return 1L;
+        });
+        when(zSetOps.add(eq(SECKILL_PENDING_WRITERS_KEY), anyString(), anyDouble())).thenAnswer(inv -> {
+            writers.put(inv.getArgument(1), inv.getArgument(2));
+            return true;
+        });
+        when(zSetOps.rangeByScore(eq(SECKILL_PENDING_WRITERS_KEY), anyDouble(), anyDouble())).thenAnswer(inv -> {
+            double min = inv.getArgument(1);
+            return writers.entrySet().stream().filter(e -> e.getValue() >= min)
+                    .map(Map.Entry::getKey).collect(Collectors.toSet());
+        });
+        properties = new SeckillProperties();
+    }
+
+    private SeckillStockWriter writer() {
+        SeckillStockWriter writer = new SeckillStockWriter();
+        ReflectionTestUtils.setField(writer, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(writer, "seckillProperties", properties);
+        ReflectionTestUtils.invokeMethod(writer, "init");
+        return writer;
+    }
+
+    @Test
+    void clusterPendingIncludesOtherNodes() {
+        SeckillStockWriter local = writer();
+        SeckillStockWriter other = writer();
+        local.decrement(VOUCHER_ID, 2);
+        other.decrement(VOUCHER_ID, 5);
+
+        assertEquals(2, local.pending(VOUCHER_ID));
+        assertEquals(7, local.clusterPending(VOUCHER_ID));
+        assertEquals(7, other.clusterPending(VOUCHER_ID));
+    }
+
+    @Test
+    void reconcilerSeesNoDriftWhileAnotherNodeHasPendingDeltas() {
+        SeckillStockWriter local = writer();
+        SeckillStockWriter other = writer();
+        // 总量100，卖出30且已全部落库，本节点已回写20个扣减，另一节点的10个还未回写(或回写失败)
+        other.decrement(VOUCHER_ID, 10);
+
+        assertEquals(10, SeckillStockReconciler.drift(80, local.pending(VOUCHER_ID), 70, 30, 30));
+        assertEquals(0, SeckillStockReconciler.drift(80, local.clusterPending(VOUCHER_ID), 70, 30, 30));
+    }
+
+    @Test
+    void deadNodePendingIsDroppedSoTheLostDecrementShowsAsDrift() {
+        SeckillStockWriter local = writer();
+        SeckillStockWriter dead = writer();
+        dead.decrement(VOUCHER_ID, 4);
+        local.decrement(VOUCHER_ID, 1);
+        // 心跳超时
+        writers.replaceAll((node, lastSeen) -> node.equals(ReflectionTestUtils.getField(dead, "nodeId"))
+                ? lastSeen - properties.getStockSync().getWriterTimeout().toMillis() - 1000 : lastSeen);
+
+        assertEquals(1, local.clusterPending(VOUCHER_ID));
+        Set<Object> fields = hashes.get(SECKILL_PENDING_KEY + VOUCHER_ID).keySet();
+        assertFalse(fields.contains(ReflectionTestUtils.getField(dead, "nodeId")));
+        assertTrue(fields.contains(ReflectionTestUtils.getField(local, "nodeId")));
+    }
+}
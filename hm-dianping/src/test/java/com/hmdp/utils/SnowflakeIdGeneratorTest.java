@@ -0,0 +1,127 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.IdProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static com.hmdp.utils.RedisConstants.ID_WORKER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SnowflakeIdGeneratorTest {
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOps;
+    private IdProperties idProperties;
+    private SnowflakeIdGenerator generator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        idProperties = new IdProperties();
+        idProperties.getModes().put("order", IdProperties.IdMode.SNOWFLAKE);
+        idProperties.getSnowflake().setHeartbeat(Duration.ofHours(1));
+        generator = new SnowflakeIdGenerator(redisTemplate, idProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generator.release();
+    }
+
+    private int leasedWorkerId() {
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(valueOps).setIfAbsent(key.capture(), anyString(), anyLong(), any(TimeUnit.class));
+        return Integer.parseInt(key.getValue().substring(ID_WORKER_KEY.length()));
+    }
+
+    @Test
+    void idsCarryTimestampAndWorkerId() {
+        generator.init();
+        int workerId = leasedWorkerId();
+
+        long id = generator.nextId();
+        // 低32位: 1位模式位 + 10位worker id + 21位序列号
+        assertEquals(SnowflakeIdGenerator.MODE_BIT, id & SnowflakeIdGenerator.MODE_BIT);
+        assertEquals(workerId, (id >>> 21) & 0x3FF);
+        long timestamp = id >>> 32;
+        long expected = RedisIdWorker.currentSeconds() - RedisIdWorker.BEGIN_TIME;
+        assertTrue(Math.abs(expected - timestamp) <= 1);
+        assertTrue(generator.nextId() > id);
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        generator.init();
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                List<Long> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextId());
+                }
+                return ids;
+            }));
+        }
+        Set<Long> all = ConcurrentHashMap.newKeySet();
+        for (Future<List<Long>> future : futures) {
+            all.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(threads * perThread, all.size());
+    }
+
+    @Test
+    void refusesWithoutLease() {
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void refusesAfterLeaseExpiresLocally() throws InterruptedException {
+        idProperties.getSnowflake().setLeaseTtl(Duration.ofMillis(50));
+        generator.init();
+        generator.nextId();
+        // 续约间隔很长，租约在本地过期后拒绝生成
+        Thread.sleep(100);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void noLeaseWithoutSnowflakePrefix() {
+        idProperties.getModes().clear();
+        generator.init();
+        verify(valueOps, never()).setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    void releaseKeepsLeaseUntilItExpires() {
+        generator.init();
+        generator.nextId();
+
+        generator.release();
+
+        // 不删除租约，重启后在租约过期前不会拿到同一个worker id
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+        verify(redisTemplate, never()).delete(anyString());
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+}
@@ -0,0 +1,68 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsBurstThenAsksToWait() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        long wait = bucket.tryAcquire();
+        // 每秒1个令牌，下一个令牌最多等待1秒
+        assertTrue(wait > 0 && wait <= 1000, "wait=" + wait);
+    }
+
+    @Test
+    void refillsAtConfiguredRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 1);
+        assertEquals(0, bucket.tryAcquire());
+        Thread.sleep(20);
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    @Test
+    void neverExceedsCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(50, 2);
+        // 空闲期间积累的令牌不超过容量
+        Thread.sleep(200);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void limiterRejectsUserOverLocalBucket() {
+        SeckillProperties properties = new SeckillProperties();
+        properties.getRateLimit().setUserRate(1);
+        properties.getRateLimit().setUserBurst(2);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        when(hashOps.multiGet(any(), anyCollection())).thenReturn(Arrays.asList(null, null));
+        SeckillRateLimiter limiter = new SeckillRateLimiter(redisTemplate, properties, new SimpleMeterRegistry());
+
+        assertEquals(0, limiter.tryAcquire(1L, 10L));
+        assertEquals(0, limiter.tryAcquire(1L, 10L));
+        assertTrue(limiter.tryAcquire(1L, 10L) > 0);
+        // 其他用户不受影响
+        assertEquals(0, limiter.tryAcquire(2L, 10L));
+        // 券未配置速率且默认不限流时不执行脚本
+        verify(redisTemplate, never()).execute(any(), anyList(), any());
+    }
+}